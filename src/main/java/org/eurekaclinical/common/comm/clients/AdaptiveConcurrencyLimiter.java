@@ -0,0 +1,237 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.sun.jersey.api.client.ClientResponse;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A concurrency limit that adapts to a backend service's behavior with
+ * additive increase and multiplicative decrease (AIMD). Completed calls are
+ * collected in windows of a fixed number of samples. At the end of each
+ * window, the limit is cut by the backoff ratio if the error rate exceeded
+ * its threshold or the 99th percentile latency exceeded the baseline by more
+ * than the tolerance, and otherwise raised by one if the window came close
+ * to the limit. The baseline is the lowest recent 99th percentile latency,
+ * and drifts upward slowly so that it follows lasting changes in the
+ * backend service. Calls beyond the limit are rejected immediately with 503
+ * (Service Unavailable).
+ *
+ * This class is thread-safe.
+ *
+ * @author Andrew Post
+ */
+public class AdaptiveConcurrencyLimiter implements ConcurrencyLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    /**
+     * How much the baseline may rise per window, as a fraction.
+     */
+    private static final double BASELINE_DRIFT = 0.05;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double errorRateThreshold;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight;
+    private final LongAdder rejected;
+    private volatile int limit;
+
+    /**
+     * Guarded by this.
+     */
+    private final long[] window;
+    private int samples;
+    private int errors;
+    private int maxInFlightInWindow;
+    private long baselineP99;
+    private long lastP99;
+
+    /**
+     * Creates a limiter with an initial limit of 20 and a range of 1 to 200,
+     * windows of 100 calls, a latency tolerance of 2 times the baseline, an
+     * error rate threshold of 5% and a backoff ratio of 0.9.
+     *
+     * @param inName a name for log and error messages.
+     */
+    public AdaptiveConcurrencyLimiter(String inName) {
+        this(inName, 20, 1, 200, 100, 2.0, 0.05, 0.9);
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param inName a name for log and error messages.
+     * @param inInitialLimit the starting limit.
+     * @param inMinLimit the lowest the limit may go. Must be positive.
+     * @param inMaxLimit the highest the limit may go.
+     * @param inWindowSize the number of calls per window. Must be positive.
+     * @param inLatencyTolerance how many times the baseline 99th percentile
+     * latency a window's 99th percentile latency may be before the limit is
+     * cut. Must be greater than 1.
+     * @param inErrorRateThreshold the fraction of failed calls in a window
+     * above which the limit is cut.
+     * @param inBackoffRatio what to multiply the limit by when cutting it.
+     * Must be between 0 and 1.
+     */
+    public AdaptiveConcurrencyLimiter(String inName, int inInitialLimit, int inMinLimit, int inMaxLimit,
+            int inWindowSize, double inLatencyTolerance, double inErrorRateThreshold, double inBackoffRatio) {
+        if (inMinLimit < 1 || inMaxLimit < inMinLimit) {
+            throw new IllegalArgumentException("Must have 1 <= inMinLimit <= inMaxLimit");
+        }
+        if (inWindowSize < 1) {
+            throw new IllegalArgumentException("inWindowSize must be positive");
+        }
+        if (inLatencyTolerance <= 1) {
+            throw new IllegalArgumentException("inLatencyTolerance must be greater than 1");
+        }
+        if (inBackoffRatio <= 0 || inBackoffRatio >= 1) {
+            throw new IllegalArgumentException("inBackoffRatio must be between 0 and 1");
+        }
+        this.name = inName;
+        this.minLimit = inMinLimit;
+        this.maxLimit = inMaxLimit;
+        this.latencyTolerance = inLatencyTolerance;
+        this.errorRateThreshold = inErrorRateThreshold;
+        this.backoffRatio = inBackoffRatio;
+        this.limit = Math.max(inMinLimit, Math.min(inMaxLimit, inInitialLimit));
+        this.window = new long[inWindowSize];
+        this.inFlight = new AtomicInteger();
+        this.rejected = new LongAdder();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getLimit() {
+        return this.limit;
+    }
+
+    @Override
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    @Override
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * Gets the 99th percentile latency of the most recent complete window.
+     *
+     * @return the latency in nanoseconds, or 0 if no window has completed.
+     */
+    public synchronized long getLastP99() {
+        return this.lastP99;
+    }
+
+    /**
+     * Gets the baseline 99th percentile latency.
+     *
+     * @return the latency in nanoseconds, or 0 if no window has completed.
+     */
+    public synchronized long getBaselineP99() {
+        return this.baselineP99;
+    }
+
+    @Override
+    public void acquire() throws ClientException {
+        while (true) {
+            int current = this.inFlight.get();
+            if (current >= this.limit) {
+                this.rejected.increment();
+                throw new ClientException(ClientResponse.Status.SERVICE_UNAVAILABLE,
+                        "Too many concurrent calls to " + this.name);
+            }
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void release(long latencyNanos, boolean failed) {
+        int current = this.inFlight.getAndDecrement();
+        synchronized (this) {
+            this.window[this.samples++] = latencyNanos;
+            if (failed) {
+                this.errors++;
+            }
+            if (current > this.maxInFlightInWindow) {
+                this.maxInFlightInWindow = current;
+            }
+            if (this.samples == this.window.length) {
+                adjust();
+            }
+        }
+    }
+
+    /**
+     * Adjusts the limit at the end of a window. Guarded by this.
+     */
+    private void adjust() {
+        long[] sorted = Arrays.copyOf(this.window, this.samples);
+        Arrays.sort(sorted);
+        long p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        double errorRate = (double) this.errors / this.samples;
+        int oldLimit = this.limit;
+        int newLimit;
+        if (errorRate > this.errorRateThreshold
+                || (this.baselineP99 > 0 && p99 > this.baselineP99 * this.latencyTolerance)) {
+            newLimit = Math.max(this.minLimit, (int) (oldLimit * this.backoffRatio));
+        } else if (this.maxInFlightInWindow >= oldLimit - 1) {
+            newLimit = Math.min(this.maxLimit, oldLimit + 1);
+        } else {
+            newLimit = oldLimit;
+        }
+        if (this.baselineP99 == 0 || p99 < this.baselineP99) {
+            this.baselineP99 = p99;
+        } else {
+            this.baselineP99 = Math.min(p99, (long) (this.baselineP99 * (1 + BASELINE_DRIFT)));
+        }
+        this.lastP99 = p99;
+        this.limit = newLimit;
+        if (newLimit != oldLimit) {
+            LOGGER.debug("Concurrency limit of {} changed from {} to {} (p99 {} ns, baseline {} ns, error rate {})",
+                    this.name, oldLimit, newLimit, p99, this.baselineP99, errorRate);
+        }
+        this.samples = 0;
+        this.errors = 0;
+        this.maxInFlightInWindow = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimiter{" + "name=" + name + ", limit=" + limit + ", inFlight=" + getInFlight() + ", rejected=" + getRejected() + '}';
+    }
+
+}
@@ -21,7 +21,19 @@ package org.eurekaclinical.common.comm.clients;
  */
 
 import com.sun.jersey.api.client.GenericType;
+import com.sun.jersey.core.util.MultivaluedMapImpl;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.ContextResolver;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.eurekaclinical.common.comm.Role;
@@ -30,6 +42,13 @@ import org.eurekaclinical.common.comm.User;
 /**
  * Base class for creating REST API clients that implement Eureka! Clinical's
  * standard users and roles APIs.
+ *
+ * Roles may be cached, because the role table rarely changes, by calling
+ * {@link #setRoleCacheTtl(long, java.util.concurrent.TimeUnit) }. The cached
+ * role list is reloaded in the background when it nears the end of its time
+ * to live, and synchronously once it has expired. Call
+ * {@link #invalidateRoles() } after changing roles to force a reload.
+ * Callers get their own copies of the cached roles, which they may modify.
  * 
  * @author Andrew Post
  */
@@ -39,10 +58,22 @@ public abstract class AuthorizingEurekaClinicalClient extends EurekaClinicalClie
     };
     private static final GenericType<List<Role>> RoleList = new GenericType<List<Role>>() {
     };
+    private static final String USERS_BY_IDS_PATH = "/api/protected/users/byids";
+    private static final int USER_IDS_PER_CALL = 100;
+    private static final String ROLES_PATH = "/api/protected/roles";
+
+    private final AtomicReference<RoleSnapshot> roleSnapshot = new AtomicReference<>();
+    private final AtomicBoolean roleRefreshInProgress = new AtomicBoolean();
+    private final Object roleLoadLock = new Object();
+    private volatile long roleCacheTtl;
 
     protected AuthorizingEurekaClinicalClient(Class<? extends ContextResolver<? extends ObjectMapper>> cls) {
         super(cls);
     }
+
+    protected AuthorizingEurekaClinicalClient(Class<? extends ContextResolver<? extends ObjectMapper>> cls, ConnectionPoolConfig poolConfig) {
+        super(cls, poolConfig);
+    }
     
     public List<? extends User> getUsers() throws ClientException {
         final String path = "/api/protected/users";
@@ -59,17 +90,182 @@ public abstract class AuthorizingEurekaClinicalClient extends EurekaClinicalClie
         return doGet(path, User.class);
     }
 
+    /**
+     * Gets the users with the given unique identifiers. Large sets of ids are
+     * split into chunks that are retrieved in parallel. Users that do not
+     * exist or that the current user is not authorized to access are
+     * omitted.
+     *
+     * @param inUserIds the unique identifiers. Cannot be <code>null</code>.
+     * @return the users.
+     * @throws ClientException if any chunk could not be retrieved.
+     */
+    public List<User> getUsersByIds(Collection<Long> inUserIds) throws ClientException {
+        List<Long> ids = new ArrayList<>(inUserIds);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (ids.size() <= USER_IDS_PER_CALL) {
+            return doGet(USERS_BY_IDS_PATH, idParams(ids), UserList);
+        }
+        List<CompletableFuture<List<User>>> chunks = new ArrayList<>();
+        for (int i = 0, n = ids.size(); i < n; i += USER_IDS_PER_CALL) {
+            List<Long> chunk = ids.subList(i, Math.min(n, i + USER_IDS_PER_CALL));
+            chunks.add(doGetAsync(USERS_BY_IDS_PATH, idParams(chunk), UserList));
+        }
+        List<User> result = new ArrayList<>(ids.size());
+        try {
+            for (CompletableFuture<List<User>> chunk : chunks) {
+                result.addAll(chunk.join());
+            }
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ClientException) {
+                ClientException ce = (ClientException) cause;
+                throw new ClientException(ce.getResponseStatus(), ce.getMessage());
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw ex;
+            }
+        }
+        return result;
+    }
+
+    private static MultivaluedMap<String, String> idParams(List<Long> inIds) {
+        MultivaluedMap<String, String> params = new MultivaluedMapImpl();
+        for (Long id : inIds) {
+            params.add("id", id.toString());
+        }
+        return params;
+    }
+
+    /**
+     * Gets all roles.
+     *
+     * @return a new list of the roles, which the caller may modify.
+     * @throws ClientException if the roles could not be retrieved.
+     */
     public List<Role> getRoles() throws ClientException {
-        final String path = "/api/protected/roles";
-        return doGet(path, RoleList);
+        if (this.roleCacheTtl <= 0) {
+            return doGet(ROLES_PATH, RoleList);
+        }
+        List<Role> cached = currentRoles().roles;
+        List<Role> result = new ArrayList<>(cached.size());
+        for (Role role : cached) {
+            result.add(copy(role));
+        }
+        return result;
     }
 
     public Role getRole(Long inRoleId) throws ClientException {
-        final String path = "/api/protected/roles/" + inRoleId;
+        if (this.roleCacheTtl > 0) {
+            Role role = currentRoles().byId.get(inRoleId);
+            if (role != null) {
+                return copy(role);
+            }
+        }
+        final String path = ROLES_PATH + "/" + inRoleId;
         return doGet(path, Role.class);
     }
 
     public Role getRoleByName(String name) throws ClientException {
-        return doGet("/api/protected/roles/byname/" + name, Role.class);
+        if (this.roleCacheTtl > 0) {
+            Role role = currentRoles().byName.get(name);
+            if (role != null) {
+                return copy(role);
+            }
+        }
+        return doGet(ROLES_PATH + "/byname/" + name, Role.class);
+    }
+
+    /**
+     * Discards the cached roles, so that the next role lookup retrieves them
+     * from the service.
+     */
+    public void invalidateRoles() {
+        this.roleSnapshot.set(null);
+    }
+
+    /**
+     * Sets how long retrieved roles are cached. Roles are not cached by
+     * default.
+     *
+     * @param ttl the time to live. Zero or less turns off caching.
+     * @param unit the unit of <code>ttl</code>.
+     */
+    protected void setRoleCacheTtl(long ttl, TimeUnit unit) {
+        this.roleCacheTtl = unit.toMillis(ttl);
+        invalidateRoles();
+    }
+
+    /**
+     * Gets the cached roles, loading them if they are missing or expired, and
+     * starting a background reload if they will expire soon.
+     *
+     * @return the roles.
+     * @throws ClientException if the roles could not be retrieved.
+     */
+    private RoleSnapshot currentRoles() throws ClientException {
+        long ttl = this.roleCacheTtl;
+        RoleSnapshot snapshot = this.roleSnapshot.get();
+        long now = System.currentTimeMillis();
+        if (snapshot == null || now - snapshot.loadedAt >= ttl) {
+            synchronized (this.roleLoadLock) {
+                snapshot = this.roleSnapshot.get();
+                if (snapshot == null || System.currentTimeMillis() - snapshot.loadedAt >= ttl) {
+                    snapshot = new RoleSnapshot(doGet(ROLES_PATH, RoleList));
+                    this.roleSnapshot.set(snapshot);
+                }
+            }
+        } else if (now - snapshot.loadedAt >= ttl - ttl / 4) {
+            refreshRolesAsync(snapshot);
+        }
+        return snapshot;
+    }
+
+    private void refreshRolesAsync(RoleSnapshot stale) {
+        if (this.roleRefreshInProgress.compareAndSet(false, true)) {
+            doGetAsync(ROLES_PATH, RoleList).whenComplete((roles, ex) -> {
+                try {
+                    if (ex == null) {
+                        this.roleSnapshot.compareAndSet(stale, new RoleSnapshot(roles));
+                    }
+                } finally {
+                    this.roleRefreshInProgress.set(false);
+                }
+            });
+        }
+    }
+
+    private static Role copy(Role role) {
+        Role result = new Role();
+        result.setId(role.getId());
+        result.setName(role.getName());
+        return result;
+    }
+
+    /**
+     * An immutable copy of the role list with indexes by id and name.
+     */
+    private static final class RoleSnapshot {
+
+        private final List<Role> roles;
+        private final Map<Long, Role> byId;
+        private final Map<String, Role> byName;
+        private final long loadedAt;
+
+        RoleSnapshot(List<Role> inRoles) {
+            this.roles = Collections.unmodifiableList(inRoles);
+            Map<Long, Role> ids = new HashMap<>();
+            Map<String, Role> names = new HashMap<>();
+            for (Role role : inRoles) {
+                ids.put(role.getId(), role);
+                names.put(role.getName(), role);
+            }
+            this.byId = ids;
+            this.byName = names;
+            this.loadedAt = System.currentTimeMillis();
+        }
     }
 }
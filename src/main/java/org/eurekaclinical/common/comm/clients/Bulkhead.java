@@ -0,0 +1,165 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.sun.jersey.api.client.ClientResponse;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed limit on the number of concurrent proxied calls through a
+ * {@link Route}, so
+ * that a slow backend service cannot tie up all of the gateway's threads and
+ * connections. Calls beyond the limit wait in a bounded queue for a limited
+ * time, and are rejected with 503 (Service Unavailable) if the queue is full
+ * or the wait times out.
+ *
+ * This class is thread-safe.
+ *
+ * @author Andrew Post
+ */
+public class Bulkhead implements ConcurrencyLimiter {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWait;
+    private final Semaphore permits;
+    private final AtomicInteger queued;
+    private final LongAdder rejected;
+
+    /**
+     * Creates a bulkhead that rejects calls beyond the limit immediately.
+     *
+     * @param inName a name for log and error messages.
+     * @param inMaxConcurrent the maximum number of concurrent calls. Must be
+     * positive.
+     */
+    public Bulkhead(String inName, int inMaxConcurrent) {
+        this(inName, inMaxConcurrent, 0, 0);
+    }
+
+    /**
+     * Creates a bulkhead.
+     *
+     * @param inName a name for log and error messages.
+     * @param inMaxConcurrent the maximum number of concurrent calls. Must be
+     * positive.
+     * @param inMaxQueued the maximum number of calls that may wait for one of
+     * the concurrent calls to finish.
+     * @param inMaxWait how long a call may wait, in milliseconds.
+     */
+    public Bulkhead(String inName, int inMaxConcurrent, int inMaxQueued, long inMaxWait) {
+        if (inMaxConcurrent < 1) {
+            throw new IllegalArgumentException("inMaxConcurrent must be positive");
+        }
+        this.name = inName;
+        this.maxConcurrent = inMaxConcurrent;
+        this.maxQueued = Math.max(0, inMaxQueued);
+        this.maxWait = Math.max(0, inMaxWait);
+        this.permits = new Semaphore(inMaxConcurrent, true);
+        this.queued = new AtomicInteger();
+        this.rejected = new LongAdder();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    @Override
+    public int getLimit() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    @Override
+    public int getInFlight() {
+        return this.maxConcurrent - this.permits.availablePermits();
+    }
+
+    /**
+     * Gets the number of calls that are waiting.
+     *
+     * @return the number of calls.
+     */
+    public int getQueued() {
+        return this.queued.get();
+    }
+
+    @Override
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * Reserves a slot for a call, waiting if necessary and allowed.
+     *
+     * @throws ClientException with status 503 (Service Unavailable) if the
+     * call is rejected.
+     */
+    @Override
+    public void acquire() throws ClientException {
+        if (this.permits.tryAcquire()) {
+            return;
+        }
+        if (this.queued.incrementAndGet() > this.maxQueued) {
+            this.queued.decrementAndGet();
+            throw reject();
+        }
+        try {
+            if (!this.permits.tryAcquire(this.maxWait, TimeUnit.MILLISECONDS)) {
+                throw reject();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw reject();
+        } finally {
+            this.queued.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void release(long latencyNanos, boolean failed) {
+        this.permits.release();
+    }
+
+    private ClientException reject() {
+        this.rejected.increment();
+        return new ClientException(ClientResponse.Status.SERVICE_UNAVAILABLE,
+                "Too many concurrent calls to " + this.name);
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{" + "name=" + name + ", maxConcurrent=" + maxConcurrent + ", maxQueued=" + maxQueued + ", inFlight=" + getInFlight() + ", queued=" + getQueued() + ", rejected=" + getRejected() + '}';
+    }
+
+}
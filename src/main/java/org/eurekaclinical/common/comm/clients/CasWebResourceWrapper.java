@@ -25,17 +25,42 @@ import org.jasig.cas.client.authentication.AttributePrincipal;
 import org.jasig.cas.client.util.AssertionHolder;
 import org.jasig.cas.client.validation.Assertion;
 
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.filter.ClientFilter;
 
 /**
+ * Adds a CAS proxy ticket to calls. A wrapper may be created for the call
+ * that establishes the client's session with the service, in which case it
+ * runs a callback when that call's response arrives or the call fails.
  *
  * @author Andrew Post
  */
 class CasWebResourceWrapper extends AbstractWebResourceWrapper {
 
-    CasWebResourceWrapper(WebResource inWebResource) {
+    private final ProxyTicketMetrics metrics;
+    private final Runnable onSessionCallDone;
+
+    CasWebResourceWrapper(WebResource inWebResource, ProxyTicketMetrics inMetrics) {
+        this(inWebResource, inMetrics, null);
+    }
+
+    /**
+     * Creates a wrapper for the call that establishes the client's session
+     * with the service.
+     *
+     * @param inWebResource the service's base resource.
+     * @param inMetrics where to record proxy ticket latency.
+     * @param inOnSessionCallDone run once the call's response has arrived, or
+     * if getting a proxy ticket or making the call fails. May be run more
+     * than once. If <code>null</code>, nothing is run.
+     */
+    CasWebResourceWrapper(WebResource inWebResource, ProxyTicketMetrics inMetrics, Runnable inOnSessionCallDone) {
         super(inWebResource);
+        this.metrics = inMetrics;
+        this.onSessionCallDone = inOnSessionCallDone;
     }
 
     @Override
@@ -45,16 +70,32 @@ class CasWebResourceWrapper extends AbstractWebResourceWrapper {
             webResource = webResource.queryParams(queryParams);
         }
         webResource = webResource.path(path);
-        webResource = withProxyTicket(webResource);
+        try {
+            webResource = withProxyTicket(webResource);
+        } catch (ClientException | RuntimeException ex) {
+            if (this.onSessionCallDone != null) {
+                this.onSessionCallDone.run();
+            }
+            throw ex;
+        }
+        if (this.onSessionCallDone != null) {
+            webResource.addFilter(new SessionCallFilter(this.onSessionCallDone));
+        }
         return webResource;
     }
 
-    private static WebResource withProxyTicket(WebResource webResource) throws ClientException {
+    private WebResource withProxyTicket(WebResource webResource) throws ClientException {
         Assertion assertion = AssertionHolder.getAssertion();
         if (assertion != null) {
             AttributePrincipal principal = assertion.getPrincipal();
-            String proxyTicket = principal.getProxyTicketFor(
-                    webResource.getURI().toString());
+            String proxyTicket = null;
+            long start = System.nanoTime();
+            try {
+                proxyTicket = principal.getProxyTicketFor(
+                        webResource.getURI().toString());
+            } finally {
+                this.metrics.record(System.nanoTime() - start, proxyTicket != null);
+            }
             if (proxyTicket == null) {
                 throw new ClientException(
                         ClientResponse.Status.BAD_REQUEST,
@@ -65,4 +106,26 @@ class CasWebResourceWrapper extends AbstractWebResourceWrapper {
             return webResource;
         }
     }
+
+    /**
+     * Runs a callback after the response to a call has arrived and the
+     * client has processed any cookies that it sets, or after the call fails.
+     */
+    private static final class SessionCallFilter extends ClientFilter {
+
+        private final Runnable onDone;
+
+        SessionCallFilter(Runnable inOnDone) {
+            this.onDone = inOnDone;
+        }
+
+        @Override
+        public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+            try {
+                return getNext().handle(cr);
+            } finally {
+                this.onDone.run();
+            }
+        }
+    }
 }
@@ -19,43 +19,200 @@ package org.eurekaclinical.common.comm.clients;
  * limitations under the License.
  * #L%
  */
+import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.client.apache4.ApacheHttpClient4;
 import java.net.HttpCookie;
 import java.net.URI;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.http.cookie.Cookie;
+import org.jasig.cas.client.util.AssertionHolder;
 
 /**
+ * Creates wrappers that add a CAS proxy ticket to calls until the client has
+ * a session cookie for the service, and that pass calls through unchanged
+ * afterwards. Whether there is a session cookie is remembered along with the
+ * cookie's expiration time, so that the client's cookie store is only
+ * searched again when the cookie is about to expire or after the service has
+ * challenged the client with a 401 or 302 response.
+ *
+ * When there is no session yet, only one of the calls that are made
+ * concurrently gets a proxy ticket and establishes the session. The others
+ * wait briefly for its response and then use the session cookie, falling
+ * back to getting their own proxy ticket if no session was established in
+ * time. The establishing call is finished when its response arrives, or at
+ * the latest when the client calls {@link #release() }, so an abandoned
+ * call cannot hold up later ones. If the client does not keep cookies,
+ * every call gets its own proxy ticket.
  *
  * @author Andrew Post
  */
 class CasWebResourceWrapperFactory implements WebResourceWrapperFactory {
 
+    /**
+     * How long before a session cookie's expiration time to stop relying on
+     * it, in milliseconds.
+     */
+    private static final long EXPIRY_SKEW = 5000;
+
+    /**
+     * Value of {@link CachedWrappers#sessionValidUntil} when the client is
+     * not known to have a session cookie.
+     */
+    private static final long NO_SESSION = Long.MIN_VALUE;
+
+    /**
+     * The default maximum time to wait for another call to establish a
+     * session before getting a proxy ticket, in milliseconds.
+     */
+    static final long DEFAULT_SESSION_WAIT = 1000;
+
+    private final ProxyTicketMetrics metrics;
+    private final boolean sessionCookies;
+    private final long sessionWait;
+    private final AtomicReference<SessionEstablishment> establishing;
+    private final ThreadLocal<SessionEstablishment> owned;
+    private volatile CachedWrappers cached;
+
+    /**
+     * Creates the factory.
+     *
+     * @param inMetrics where to record proxy ticket latency.
+     * @param inSessionCookies whether the client keeps cookies, so that the
+     * service's session cookie can replace proxy tickets.
+     * @param inMaxSessionWait the longest a caller is willing to wait, in
+     * milliseconds, for example, the client's connection request timeout.
+     * Waiting for another call to establish a session is bounded by this and
+     * by {@link #DEFAULT_SESSION_WAIT}. A value less than or equal to zero
+     * means no bound other than the default.
+     */
+    CasWebResourceWrapperFactory(ProxyTicketMetrics inMetrics, boolean inSessionCookies, long inMaxSessionWait) {
+        this.metrics = inMetrics;
+        this.sessionCookies = inSessionCookies;
+        this.sessionWait = inMaxSessionWait > 0 ? Math.min(inMaxSessionWait, DEFAULT_SESSION_WAIT) : DEFAULT_SESSION_WAIT;
+        this.establishing = new AtomicReference<>();
+        this.owned = new ThreadLocal<>();
+    }
+
     @Override
     public WebResourceWrapper getInstance(ApacheHttpClient4 client, URI resourceUrl) {
-        if (hasCookieFor(client, resourceUrl)) {
-            return new DefaultWebResourceWrapper(client.resource(resourceUrl));
+        CachedWrappers wrappers = this.cached;
+        if (wrappers == null || wrappers.client != client || !wrappers.resourceUrl.equals(resourceUrl)) {
+            wrappers = new CachedWrappers(client, resourceUrl, this.metrics);
+            this.cached = wrappers;
+        }
+        if (!this.sessionCookies) {
+            return wrappers.casWrapper;
+        }
+        long sessionValidUntil = wrappers.sessionValidUntil;
+        if (sessionValidUntil == NO_SESSION || sessionValidUntil <= System.currentTimeMillis()) {
+            sessionValidUntil = sessionCookieValidUntil(client, resourceUrl);
+            wrappers.sessionValidUntil = sessionValidUntil;
+        }
+        if (sessionValidUntil != NO_SESSION) {
+            return wrappers.defaultWrapper;
+        } else if (AssertionHolder.getAssertion() == null) {
+            return wrappers.casWrapper;
         } else {
-            return new CasWebResourceWrapper(client.resource(resourceUrl));
+            return establishSession(wrappers);
         }
     }
 
-    private boolean hasCookieFor(ApacheHttpClient4 client, URI resourceUrl) {
+    /**
+     * Gets a wrapper for a call that is made when there is no session. The
+     * first such call gets a wrapper that establishes the session, and
+     * concurrent calls wait for it to finish.
+     *
+     * @param wrappers the cached wrappers.
+     * @return a wrapper.
+     */
+    private WebResourceWrapper establishSession(CachedWrappers wrappers) {
+        SessionEstablishment current = this.establishing.get();
+        if (current == null) {
+            SessionEstablishment mine = new SessionEstablishment();
+            if (this.establishing.compareAndSet(null, mine)) {
+                this.owned.set(mine);
+                return new CasWebResourceWrapper(wrappers.webResource, this.metrics, () -> finish(mine));
+            }
+            current = this.establishing.get();
+        }
+        if (current != null) {
+            try {
+                current.latch.await(this.sessionWait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            long sessionValidUntil = sessionCookieValidUntil(wrappers.client, wrappers.resourceUrl);
+            wrappers.sessionValidUntil = sessionValidUntil;
+            if (sessionValidUntil != NO_SESSION) {
+                return wrappers.defaultWrapper;
+            }
+        }
+        return wrappers.casWrapper;
+    }
+
+    @Override
+    public void release() {
+        SessionEstablishment mine = this.owned.get();
+        if (mine != null) {
+            this.owned.remove();
+            finish(mine);
+        }
+    }
+
+    /**
+     * Ends a session establishment and wakes up the calls that are waiting
+     * for it. Calling this more than once has no further effect.
+     *
+     * @param establishment the session establishment.
+     */
+    private void finish(SessionEstablishment establishment) {
+        this.establishing.compareAndSet(establishment, null);
+        establishment.latch.countDown();
+    }
+
+    @Override
+    public void invalidate() {
+        CachedWrappers wrappers = this.cached;
+        if (wrappers != null) {
+            wrappers.sessionValidUntil = NO_SESSION;
+        }
+    }
+
+    /**
+     * Searches the client's cookie store for a session cookie for the
+     * service.
+     *
+     * @param client the client.
+     * @param resourceUrl the URL of the service.
+     * @return the time in milliseconds until which the cookie may be relied
+     * upon, or {@link #NO_SESSION} if there is no unexpired session cookie.
+     */
+    private static long sessionCookieValidUntil(ApacheHttpClient4 client, URI resourceUrl) {
         String path = resourceUrl.getPath();
         if (!path.endsWith("/")) {
             path += "/";
         }
+        long now = System.currentTimeMillis();
         List<Cookie> cookies = client.getClientHandler().getCookieStore().getCookies();
         for (Cookie cookie : cookies) {
             if ("JSESSIONID".equals(cookie.getName())
                     && domainMatches(cookie.getDomain(), resourceUrl.getHost())
-                    && cookie.getPath().equals(path)
-                    && (cookie.getExpiryDate() == null || cookie.getExpiryDate().after(new Date()))) {
-                return true;
+                    && cookie.getPath().equals(path)) {
+                Date expiryDate = cookie.getExpiryDate();
+                if (expiryDate == null) {
+                    return Long.MAX_VALUE;
+                }
+                long validUntil = expiryDate.getTime() - EXPIRY_SKEW;
+                if (validUntil > now) {
+                    return validUntil;
+                }
             }
         }
-        return false;
+        return NO_SESSION;
     }
     
     private static boolean domainMatches(String domain, String host) {
@@ -66,4 +223,35 @@ class CasWebResourceWrapperFactory implements WebResourceWrapperFactory {
         }
     }
 
+    /**
+     * The wrappers for one client and service URL, which are reused across
+     * calls, and what is known about the client's session with the service.
+     */
+    private static final class CachedWrappers {
+
+        private final ApacheHttpClient4 client;
+        private final URI resourceUrl;
+        private final WebResource webResource;
+        private final WebResourceWrapper defaultWrapper;
+        private final WebResourceWrapper casWrapper;
+        private volatile long sessionValidUntil;
+
+        CachedWrappers(ApacheHttpClient4 inClient, URI inResourceUrl, ProxyTicketMetrics inMetrics) {
+            this.client = inClient;
+            this.resourceUrl = inResourceUrl;
+            this.webResource = inClient.resource(inResourceUrl);
+            this.defaultWrapper = new DefaultWebResourceWrapper(this.webResource);
+            this.casWrapper = new CasWebResourceWrapper(this.webResource, inMetrics);
+            this.sessionValidUntil = NO_SESSION;
+        }
+    }
+
+    /**
+     * A call that is establishing the client's session with the service.
+     */
+    private static final class SessionEstablishment {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+    }
+
 }
@@ -0,0 +1,81 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Limits the number of concurrent proxied calls through one or more
+ * {@link Route}s. Implementations must be thread-safe. Routers are created
+ * per session, so a limiter must be created once, for example, as a field of
+ * a singleton {@link RouterTable}, and passed to the routes each time the
+ * table is loaded.
+ *
+ * @author Andrew Post
+ */
+public interface ConcurrencyLimiter {
+
+    /**
+     * Gets a name for log and error messages.
+     *
+     * @return the name.
+     */
+    String getName();
+
+    /**
+     * Gets the current maximum number of concurrent calls.
+     *
+     * @return the limit.
+     */
+    int getLimit();
+
+    /**
+     * Gets the number of calls that are in flight.
+     *
+     * @return the number of calls.
+     */
+    int getInFlight();
+
+    /**
+     * Gets the number of calls that have been rejected.
+     *
+     * @return the number of calls.
+     */
+    long getRejected();
+
+    /**
+     * Reserves a slot for a call. Every successful call to this method must
+     * be followed by exactly one call to
+     * {@link #release(long, boolean) }.
+     *
+     * @throws ClientException with status 503 (Service Unavailable) if the
+     * call is rejected.
+     */
+    void acquire() throws ClientException;
+
+    /**
+     * Frees the slot of a call that has finished.
+     *
+     * @param latencyNanos how long the backend service took to respond, in
+     * nanoseconds.
+     * @param failed <code>true</code> if the call failed or the backend
+     * service responded with a 5xx status.
+     */
+    void release(long latencyNanos, boolean failed);
+}
@@ -0,0 +1,255 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Settings for the HTTP connection pool of a {@link EurekaClinicalClient}.
+ * Pass an instance to the client's constructor. Changing the settings after
+ * the client has been created has no effect on that client.
+ *
+ * @author Andrew Post
+ */
+public class ConnectionPoolConfig {
+
+    private int maxTotal;
+    private int maxPerRoute;
+    private long connectionTimeToLive;
+    private long idleConnectionTimeout;
+    private long idleConnectionEvictionInterval;
+    private long connectionRequestTimeout;
+    private boolean shared;
+    private boolean cookiesEnabled;
+
+    /**
+     * Creates a configuration with a maximum of 100 connections, 20 per
+     * route, no connection time-to-live, eviction of connections that are
+     * idle for more than 60 seconds every 30 seconds, and no timeout when
+     * waiting for a connection from the pool. The pool is not shared, and
+     * cookies are enabled.
+     */
+    public ConnectionPoolConfig() {
+        this.maxTotal = 100;
+        this.maxPerRoute = 20;
+        this.connectionTimeToLive = -1;
+        this.idleConnectionTimeout = 60000;
+        this.idleConnectionEvictionInterval = 30000;
+        this.connectionRequestTimeout = 0;
+        this.shared = false;
+        this.cookiesEnabled = true;
+    }
+
+    ConnectionPoolConfig(ConnectionPoolConfig other) {
+        this.maxTotal = other.maxTotal;
+        this.maxPerRoute = other.maxPerRoute;
+        this.connectionTimeToLive = other.connectionTimeToLive;
+        this.idleConnectionTimeout = other.idleConnectionTimeout;
+        this.idleConnectionEvictionInterval = other.idleConnectionEvictionInterval;
+        this.connectionRequestTimeout = other.connectionRequestTimeout;
+        this.shared = other.shared;
+        this.cookiesEnabled = other.cookiesEnabled;
+    }
+
+    /**
+     * Gets the maximum number of connections in the pool.
+     *
+     * @return the maximum number of connections.
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * Sets the maximum number of connections in the pool.
+     *
+     * @param maxTotal the maximum number of connections. Must be positive.
+     */
+    public void setMaxTotal(int maxTotal) {
+        if (maxTotal < 1) {
+            throw new IllegalArgumentException("maxTotal must be positive");
+        }
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * Gets the maximum number of connections in the pool to any one route
+     * (scheme, host and port).
+     *
+     * @return the maximum number of connections per route.
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of connections in the pool to any one route
+     * (scheme, host and port).
+     *
+     * @param maxPerRoute the maximum number of connections per route. Must be
+     * positive.
+     */
+    public void setMaxPerRoute(int maxPerRoute) {
+        if (maxPerRoute < 1) {
+            throw new IllegalArgumentException("maxPerRoute must be positive");
+        }
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    /**
+     * Gets the maximum lifetime of a pooled connection in milliseconds.
+     *
+     * @return the time-to-live, or a value less than or equal to zero if
+     * connections may live indefinitely.
+     */
+    public long getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    /**
+     * Sets the maximum lifetime of a pooled connection in milliseconds.
+     * Connections that are older are closed rather than reused.
+     *
+     * @param connectionTimeToLive the time-to-live, or a value less than or
+     * equal to zero to let connections live indefinitely.
+     */
+    public void setConnectionTimeToLive(long connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+    }
+
+    /**
+     * Gets how long in milliseconds a connection may sit idle in the pool
+     * before it is evicted.
+     *
+     * @return the idle timeout, or a value less than or equal to zero if
+     * idle connections are not evicted.
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * Sets how long in milliseconds a connection may sit idle in the pool
+     * before it is evicted.
+     *
+     * @param idleConnectionTimeout the idle timeout, or a value less than or
+     * equal to zero to disable eviction of idle connections.
+     */
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    /**
+     * Gets how often in milliseconds the background evictor checks the pool
+     * for idle and expired connections.
+     *
+     * @return the eviction interval.
+     */
+    public long getIdleConnectionEvictionInterval() {
+        return idleConnectionEvictionInterval;
+    }
+
+    /**
+     * Sets how often in milliseconds the background evictor checks the pool
+     * for idle and expired connections.
+     *
+     * @param idleConnectionEvictionInterval the eviction interval. Must be
+     * positive.
+     */
+    public void setIdleConnectionEvictionInterval(long idleConnectionEvictionInterval) {
+        if (idleConnectionEvictionInterval < 1) {
+            throw new IllegalArgumentException("idleConnectionEvictionInterval must be positive");
+        }
+        this.idleConnectionEvictionInterval = idleConnectionEvictionInterval;
+    }
+
+    /**
+     * Gets how long in milliseconds a call waits for a connection from the
+     * pool before failing.
+     *
+     * @return the timeout, or a value less than or equal to zero if calls
+     * wait indefinitely.
+     */
+    public long getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * Sets how long in milliseconds a call waits for a connection from the
+     * pool before failing.
+     *
+     * @param connectionRequestTimeout the timeout, or a value less than or
+     * equal to zero to wait indefinitely.
+     */
+    public void setConnectionRequestTimeout(long connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    /**
+     * Gets whether the client uses a process-wide connection pool that is
+     * shared with other clients calling the same host.
+     *
+     * @return <code>true</code> if the pool is shared, <code>false</code> if
+     * the client has its own pool.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Sets whether the client uses a process-wide connection pool that is
+     * shared with other clients calling the same scheme, host and port. Use
+     * this for clients that are created per user session: each client keeps
+     * its own cookies and CAS state, but connections are pooled across all
+     * of them. The pool is created with the settings of the first client
+     * that uses it, and it is shut down when the last client that uses it is
+     * closed.
+     *
+     * @param shared <code>true</code> to share the pool, <code>false</code>
+     * to give the client its own pool.
+     */
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Returns whether the client keeps cookies, such as the session cookies
+     * of the services that it calls.
+     *
+     * @return <code>true</code> if cookies are enabled, <code>false</code>
+     * if not.
+     */
+    public boolean isCookiesEnabled() {
+        return cookiesEnabled;
+    }
+
+    /**
+     * Sets whether the client keeps cookies. With cookies disabled, the
+     * client keeps no per-user session with the services that it calls, and
+     * every call made on behalf of a CAS-authenticated user carries its own
+     * proxy ticket. Disable cookies for clients that are shared by all users
+     * of an application rather than created per user session.
+     *
+     * @param cookiesEnabled <code>false</code> to disable cookies.
+     */
+    public void setCookiesEnabled(boolean cookiesEnabled) {
+        this.cookiesEnabled = cookiesEnabled;
+    }
+
+}
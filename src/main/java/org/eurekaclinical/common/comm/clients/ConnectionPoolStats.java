@@ -0,0 +1,95 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A snapshot of the state of a {@link EurekaClinicalClient}'s HTTP
+ * connection pool, for use in sizing the pool.
+ *
+ * @author Andrew Post
+ */
+public final class ConnectionPoolStats {
+
+    private final int leased;
+    private final int pending;
+    private final int available;
+    private final int maxTotal;
+    private final int maxPerRoute;
+
+    ConnectionPoolStats(int inLeased, int inPending, int inAvailable, int inMaxTotal, int inMaxPerRoute) {
+        this.leased = inLeased;
+        this.pending = inPending;
+        this.available = inAvailable;
+        this.maxTotal = inMaxTotal;
+        this.maxPerRoute = inMaxPerRoute;
+    }
+
+    /**
+     * Gets the number of connections that are currently in use.
+     *
+     * @return the number of leased connections.
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * Gets the number of calls that are waiting for a connection.
+     *
+     * @return the number of pending connection requests.
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Gets the number of open connections that are idle in the pool.
+     *
+     * @return the number of available connections.
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * Gets the maximum number of connections in the pool.
+     *
+     * @return the maximum number of connections.
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * Gets the maximum number of connections per route.
+     *
+     * @return the maximum number of connections per route.
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{" + "leased=" + leased + ", pending=" + pending + ", available=" + available + ", maxTotal=" + maxTotal + ", maxPerRoute=" + maxPerRoute + '}';
+    }
+
+}
@@ -28,25 +28,46 @@ import com.sun.jersey.api.json.JSONConfiguration;
 import com.sun.jersey.client.apache4.ApacheHttpClient4;
 import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
 import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.core.util.MultivaluedMapImpl;
 import com.sun.jersey.multipart.Boundary;
 import com.sun.jersey.multipart.FormDataMultiPart;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Type;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.ContextResolver;
+import org.apache.http.client.params.ClientPNames;
 import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.jasig.cas.client.util.AssertionHolder;
+import org.jasig.cas.client.validation.Assertion;
 
 /**
  * Base class for creating REST API clients. This class is thread-safe.
@@ -56,54 +77,304 @@ import org.codehaus.jackson.map.ObjectMapper;
  */
 public abstract class EurekaClinicalClient implements AutoCloseable {
 
+    private static final int OPEN = 0;
+    private static final int CLOSING = 1;
+    private static final int CLOSED = 2;
+    private static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = 30000;
+    private static final long CLOSE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final WebResourceWrapperFactory webResourceWrapperFactory;
+    private final ProxyTicketMetrics proxyTicketMetrics;
     private final Class<? extends ContextResolver<? extends ObjectMapper>> contextResolverCls;
-    private final ApacheHttpClient4 client;
-    private final ClientConnectionManager clientConnManager;
-    private final Lock readLock;
-    private final Lock writeLock;
+    private final ConnectionPoolConfig poolConfig;
+    private final ScheduledFuture<?> idleConnectionEviction;
+    private volatile ApacheHttpClient4 client;
+    private volatile InstrumentedClientConnManager clientConnManager;
+    private SharedConnectionPool sharedPool;
+    private boolean transportReleased;
+    private final AtomicInteger state;
+    private final AtomicLong inFlight;
+    private volatile Executor asyncExecutor;
+    private volatile boolean getCoalescingEnabled;
+    private volatile ResponseCache responseCache;
+    private final ConcurrentMap<GetKey, CompletableFuture<Object>> inFlightGets;
 
     /**
      * Constructor for passing in the object mapper instance that is used for
-     * converting from/to JSON.
+     * converting from/to JSON. The client's connection pool has the default
+     * settings of {@link ConnectionPoolConfig}.
      *
      * @param cls the class of the object mapper.
      */
     protected EurekaClinicalClient(Class<? extends ContextResolver<? extends ObjectMapper>> cls) {
-        this.webResourceWrapperFactory = new CasWebResourceWrapperFactory();
+        this(cls, new ConnectionPoolConfig());
+    }
+
+    /**
+     * Constructor for passing in the object mapper instance that is used for
+     * converting from/to JSON, and settings for the client's connection pool.
+     *
+     * @param cls the class of the object mapper.
+     * @param poolConfig the connection pool settings. Cannot be
+     * <code>null</code>.
+     */
+    protected EurekaClinicalClient(Class<? extends ContextResolver<? extends ObjectMapper>> cls, ConnectionPoolConfig poolConfig) {
+        if (poolConfig == null) {
+            throw new IllegalArgumentException("poolConfig cannot be null");
+        }
+        this.proxyTicketMetrics = new ProxyTicketMetrics();
+        this.poolConfig = new ConnectionPoolConfig(poolConfig);
+        this.webResourceWrapperFactory = new CasWebResourceWrapperFactory(this.proxyTicketMetrics, this.poolConfig.isCookiesEnabled(), this.poolConfig.getConnectionRequestTimeout());
         this.contextResolverCls = cls;
-        ApacheHttpClient4Config clientConfig = new DefaultApacheHttpClient4Config();
-        Map<String, Object> properties = clientConfig.getProperties();
-        properties.put(ApacheHttpClient4Config.PROPERTY_DISABLE_COOKIES, false);
-        this.clientConnManager = new ThreadSafeClientConnManager();
-        properties.put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, this.clientConnManager);
-        clientConfig.getFeatures().put(
-                JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        if (this.contextResolverCls != null) {
-            clientConfig.getClasses().add(this.contextResolverCls);
+        if (this.poolConfig.isShared()) {
+            /*
+             * The shared pool is keyed by the resource URL, which subclasses
+             * usually set after calling this constructor, so the HTTP client
+             * is created on first use.
+             */
+            this.idleConnectionEviction = null;
+        } else {
+            this.clientConnManager = new InstrumentedClientConnManager(this.poolConfig);
+            this.idleConnectionEviction = IdleConnectionEvictor.schedule(this.clientConnManager, this.poolConfig);
+            this.client = createClient(this.clientConnManager);
         }
-        this.client = ApacheHttpClient4.create(clientConfig);
-        this.client.addFilter(new GZIPContentEncodingFilter(false));
-        ReadWriteLock lock = new ReentrantReadWriteLock();
-        this.readLock = lock.readLock();
-        this.writeLock = lock.writeLock();
+        this.state = new AtomicInteger(OPEN);
+        this.inFlight = new AtomicLong();
+        this.inFlightGets = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Closes the client, waiting up to 30 seconds for in-flight calls to
+     * finish before releasing its connections.
+     */
     @Override
     public void close() {
-        this.writeLock.lock();
+        close(DEFAULT_CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the client. New calls are rejected immediately with a
+     * {@link ClientException} with status 503 (Service Unavailable). Calls
+     * that are already in flight are given up to the specified amount of
+     * time to finish, after which the client's connections are released
+     * regardless. Calling this method on a client that is already closing or
+     * closed has no effect.
+     *
+     * @param timeout the maximum time to wait for in-flight calls.
+     * @param unit the unit of the timeout. Cannot be <code>null</code>.
+     * @return <code>true</code> if all in-flight calls finished before the
+     * client was closed, <code>false</code> if the timeout elapsed first or
+     * the client was already closing or closed.
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        if (!this.state.compareAndSet(OPEN, CLOSING)) {
+            return false;
+        }
         try {
-            this.client.destroy();
-            this.clientConnManager.shutdown();
+            return awaitInFlight(unit.toNanos(timeout));
         } finally {
-            this.writeLock.unlock();
+            try {
+                releaseTransport();
+            } finally {
+                this.state.set(CLOSED);
+            }
         }
     }
 
+    /**
+     * Returns whether {@link #close() } has been called on this client.
+     *
+     * @return <code>true</code> if the client is closing or closed,
+     * <code>false</code> otherwise.
+     */
+    public boolean isClosed() {
+        return this.state.get() != OPEN;
+    }
+
     protected abstract URI getResourceUrl();
 
-    private WebResourceWrapper getResourceWrapper() {
-        return this.webResourceWrapperFactory.getInstance(this.client, getResourceUrl());
+    /**
+     * Gets a snapshot of the state of this client's connection pool.
+     *
+     * @return the connection pool statistics. Guaranteed not
+     * <code>null</code>.
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        InstrumentedClientConnManager connManager = this.clientConnManager;
+        if (connManager != null) {
+            return connManager.getStats();
+        } else {
+            return new ConnectionPoolStats(0, 0, 0, this.poolConfig.getMaxTotal(), this.poolConfig.getMaxPerRoute());
+        }
+    }
+
+    /**
+     * Sets the executor on which the <code>do*Async</code> methods run their
+     * HTTP calls. If not set, a pool of daemon threads that is shared by all
+     * clients is used.
+     *
+     * @param inExecutor an executor, or <code>null</code> to use the shared
+     * default pool.
+     */
+    protected void setAsyncExecutor(Executor inExecutor) {
+        this.asyncExecutor = inExecutor;
+    }
+
+    /**
+     * Sets whether concurrent identical GET calls share one HTTP exchange.
+     * Calls are identical if they are made on behalf of the same CAS user
+     * and have the same path, query parameters, headers and result type. When
+     * enabled, all callers of a shared exchange receive the same result
+     * object, which therefore must be treated as read-only. The default is
+     * disabled.
+     *
+     * @param enabled <code>true</code> to coalesce identical GET calls.
+     */
+    protected void setGetCoalescingEnabled(boolean enabled) {
+        this.getCoalescingEnabled = enabled;
+    }
+
+    /**
+     * Installs a cache of the responses to GET calls. The typed
+     * <code>doGet</code> methods answer calls whose paths match one of the
+     * cache's path prefixes from the cache while a response is fresh, and
+     * revalidate stale responses with a conditional GET. The cache holds
+     * response bodies, and every call gets its own deserialized object,
+     * unless it is coalesced with an identical concurrent call (see
+     * {@link #setGetCoalescingEnabled(boolean) }). By default, there is no
+     * cache.
+     *
+     * @param inResponseCache a cache, or <code>null</code> to turn off
+     * caching.
+     */
+    protected void setResponseCache(ResponseCache inResponseCache) {
+        this.responseCache = inResponseCache;
+    }
+
+    /**
+     * Gets the cache of the responses to GET calls, if one is installed.
+     *
+     * @return the cache, or <code>null</code>.
+     */
+    protected ResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+
+    /**
+     * Gets the executor on which the <code>do*Async</code> methods run their
+     * HTTP calls.
+     *
+     * @return the executor. Guaranteed not <code>null</code>.
+     */
+    protected Executor getAsyncExecutor() {
+        Executor executor = this.asyncExecutor;
+        if (executor != null) {
+            return executor;
+        } else {
+            return DefaultAsyncExecutorHolder.EXECUTOR;
+        }
+    }
+
+    /**
+     * Gets a snapshot of how long this client has spent getting CAS proxy
+     * tickets.
+     *
+     * @return the proxy ticket statistics. Guaranteed not <code>null</code>.
+     */
+    public ProxyTicketStats getProxyTicketStats() {
+        return this.proxyTicketMetrics.getStats();
+    }
+
+    /**
+     * Returns whether this client keeps cookies (see
+     * {@link ConnectionPoolConfig#isCookiesEnabled() }).
+     *
+     * @return <code>true</code> if cookies are enabled, <code>false</code>
+     * if not.
+     */
+    public boolean isCookiesEnabled() {
+        return this.poolConfig.isCookiesEnabled();
+    }
+
+    private WebResourceWrapper getResourceWrapper() throws ClientException {
+        return this.webResourceWrapperFactory.getInstance(getClient(), getResourceUrl());
+    }
+
+    /**
+     * Gets the HTTP client, creating it and acquiring the shared connection
+     * pool if this client is configured to use one and this is the first
+     * call.
+     *
+     * @return the HTTP client. Guaranteed not <code>null</code>.
+     * @throws ClientException with status 503 (Service Unavailable) if the
+     * client has been closed.
+     */
+    private ApacheHttpClient4 getClient() throws ClientException {
+        ApacheHttpClient4 result = this.client;
+        if (result == null) {
+            synchronized (this) {
+                result = this.client;
+                if (result == null) {
+                    if (this.transportReleased) {
+                        throw new ClientException(ClientResponse.Status.SERVICE_UNAVAILABLE, "Client is closed");
+                    }
+                    this.sharedPool = SharedConnectionPool.acquire(getResourceUrl(), this.poolConfig);
+                    this.clientConnManager = this.sharedPool.getConnManager();
+                    result = createClient(this.clientConnManager);
+                    this.client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates an HTTP client that uses the given connection manager. The
+     * client has its own cookie store unless cookies are disabled.
+     *
+     * @param connManager the connection manager. Cannot be <code>null</code>.
+     * @return a newly created HTTP client.
+     */
+    private ApacheHttpClient4 createClient(ClientConnectionManager connManager) {
+        ApacheHttpClient4Config clientConfig = new DefaultApacheHttpClient4Config();
+        Map<String, Object> properties = clientConfig.getProperties();
+        properties.put(ApacheHttpClient4Config.PROPERTY_DISABLE_COOKIES, !this.poolConfig.isCookiesEnabled());
+        properties.put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connManager);
+        clientConfig.getFeatures().put(
+                JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+        if (this.contextResolverCls != null) {
+            clientConfig.getClasses().add(this.contextResolverCls);
+        }
+        ApacheHttpClient4 result = ApacheHttpClient4.create(clientConfig);
+        result.addFilter(new GZIPContentEncodingFilter(false));
+        if (this.poolConfig.getConnectionRequestTimeout() > 0) {
+            result.getClientHandler().getHttpClient().getParams()
+                    .setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, this.poolConfig.getConnectionRequestTimeout());
+        }
+        return result;
+    }
+
+    /**
+     * Destroys the HTTP client and shuts down the connection pool, or
+     * releases this client's reference to the shared connection pool.
+     */
+    private synchronized void releaseTransport() {
+        this.transportReleased = true;
+        try {
+            if (this.idleConnectionEviction != null) {
+                this.idleConnectionEviction.cancel(false);
+            }
+            if (this.client != null) {
+                this.client.destroy();
+            }
+        } finally {
+            if (this.sharedPool != null) {
+                this.sharedPool.release();
+                this.sharedPool = null;
+            } else if (this.clientConnManager != null) {
+                this.clientConnManager.shutdown();
+            }
+        }
     }
 
     /**
@@ -127,7 +398,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * (Accepted), and 200 (OK) is returned.
      */
     protected void doDelete(String path, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             ClientResponse response = this.getResourceWrapper()
                     .rewritten(path, HttpMethod.DELETE)
@@ -137,7 +408,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -151,7 +422,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * 200 (OK) is returned.
      */
     protected void doPut(String path) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             ClientResponse response = this.getResourceWrapper()
                     .rewritten(path, HttpMethod.PUT)
@@ -161,7 +432,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -194,7 +465,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * 200 (OK) is returned.
      */
     protected void doPut(String path, Object o, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource rewritten = this.getResourceWrapper()
                     .rewritten(path, HttpMethod.PUT);
@@ -206,7 +477,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -240,18 +511,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @throws ClientException if a status code other than 200 (OK) is returned.
      */
     protected <T> T doGet(String path, Class<T> cls, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
-        try {
-            WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET).getRequestBuilder();
-            requestBuilder = ensureJsonHeaders(headers, requestBuilder, false, true);
-            ClientResponse response = requestBuilder.get(ClientResponse.class);
-            errorIfStatusNotEqualTo(response, ClientResponse.Status.OK);
-            return response.getEntity(cls);
-        } catch (ClientHandlerException ex) {
-            throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
-        } finally {
-            this.readLock.unlock();
-        }
+        return doGetEntity(path, null, headers, cls, response -> response.getEntity(cls));
     }
 
     /**
@@ -287,17 +547,184 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @throws ClientException if a status code other than 200 (OK) is returned.
      */
     protected <T> T doGet(String path, MultivaluedMap<String, String> queryParams, Class<T> cls, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        return doGetEntity(path, queryParams, headers, cls, response -> response.getEntity(cls));
+    }
+
+    /**
+     * Gets the resource specified by the path and the provided query
+     * parameters, sharing the HTTP exchange with identical concurrent calls
+     * if GET coalescing is enabled.
+     *
+     * @param <T> the type of the resource.
+     * @param path the path to the resource.
+     * @param queryParams any query parameters. May be <code>null</code>.
+     * @param headers any headers. If no Accepts header is provided, an
+     * Accepts header for JSON will be added.
+     * @param type the type of the resource, which distinguishes calls that
+     * are otherwise identical.
+     * @param reader reads the resource from the response.
+     * @return the resource.
+     * @throws ClientException if a status code other than 200 (OK) is
+     * returned.
+     */
+    private <T> T doGetEntity(String path, MultivaluedMap<String, String> queryParams, MultivaluedMap<String, String> headers, Type type, EntityReader<T> reader) throws ClientException {
+        ResponseCache cache = this.responseCache;
+        boolean cached = cache != null && cache.isEnabledFor(path);
+        if (!cached && !this.getCoalescingEnabled) {
+            return fetchEntity(path, queryParams, headers, reader);
+        }
+        GetKey key = new GetKey(getResourceUrl(), path, queryParams, headers, type);
+        ClientCall<T> call;
+        if (cached) {
+            call = () -> fetchCachedEntity(cache, key, path, queryParams, headers, reader);
+        } else {
+            call = () -> fetchEntity(path, queryParams, headers, reader);
+        }
+        if (this.getCoalescingEnabled) {
+            return coalesce(key, call);
+        } else {
+            return call.call();
+        }
+    }
+
+    /**
+     * Answers a GET call from the response cache if the cached response is
+     * fresh, and otherwise makes the call, conditionally if a stale response
+     * is cached. The result is deserialized from the cached body for every
+     * call, so callers never share it.
+     */
+    private <T> T fetchCachedEntity(ResponseCache cache, GetKey key, String path, MultivaluedMap<String, String> queryParams, MultivaluedMap<String, String> headers, EntityReader<T> reader) throws ClientException {
+        ResponseCache.Entry entry = cache.get(key);
+        if (entry != null && entry.isFresh()) {
+            cache.recordHit();
+            return readCached(entry.getBody(), entry.getHeaders(), reader);
+        }
+        MultivaluedMap<String, String> requestHeaders = new MultivaluedMapImpl();
+        if (headers != null) {
+            requestHeaders.putAll(headers);
+        }
+        if (entry != null) {
+            entry.addConditionalHeaders(requestHeaders);
+        }
+        enter();
+        try {
+            WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET, queryParams).getRequestBuilder();
+            requestBuilder = ensureJsonHeaders(requestHeaders, requestBuilder, false, true);
+            ClientResponse response = requestBuilder.get(ClientResponse.class);
+            if (entry != null && response.getClientResponseStatus() == ClientResponse.Status.NOT_MODIFIED) {
+                response.close();
+                cache.recordRevalidation();
+                cache.refresh(key, entry, response.getHeaders());
+                return readCached(entry.getBody(), entry.getHeaders(), reader);
+            }
+            errorIfStatusNotEqualTo(response, ClientResponse.Status.OK);
+            cache.recordMiss();
+            byte[] body;
+            try (InputStream in = response.getEntityInputStream()) {
+                body = readBody(in);
+            }
+            InBoundHeaders responseHeaders = new InBoundHeaders();
+            for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+                responseHeaders.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+            cache.put(key, body, responseHeaders);
+            return readCached(body, responseHeaders, reader);
+        } catch (ClientHandlerException | IOException ex) {
+            throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Deserializes a cached response body.
+     *
+     * @param body the body. Is not modified.
+     * @param headers the headers of the response, which select the entity
+     * provider. Are not modified.
+     * @param reader reads the resource from the response.
+     * @return a newly deserialized resource.
+     * @throws ClientException if the client has been closed.
+     */
+    private <T> T readCached(byte[] body, MultivaluedMap<String, String> headers, EntityReader<T> reader) throws ClientException {
+        InBoundHeaders responseHeaders = new InBoundHeaders();
+        responseHeaders.putAll(headers);
+        try {
+            return reader.read(new ClientResponse(ClientResponse.Status.OK.getStatusCode(),
+                    responseHeaders, new ByteArrayInputStream(body),
+                    getClient().getMessageBodyWorkers()));
+        } catch (ClientHandlerException ex) {
+            throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private <T> T fetchEntity(String path, MultivaluedMap<String, String> queryParams, MultivaluedMap<String, String> headers, EntityReader<T> reader) throws ClientException {
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET, queryParams).getRequestBuilder();
             requestBuilder = ensureJsonHeaders(headers, requestBuilder, false, true);
             ClientResponse response = requestBuilder.get(ClientResponse.class);
             errorIfStatusNotEqualTo(response, ClientResponse.Status.OK);
-            return response.getEntity(cls);
+            return reader.read(response);
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
+        }
+    }
+
+    /**
+     * Runs a GET call, or waits for an identical call that is already in
+     * flight and returns its result.
+     *
+     * @param <T> the type of the call's result.
+     * @param key identifies the call.
+     * @param call the call.
+     * @return the result, which may be shared with other callers.
+     * @throws ClientException if the call failed.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(GetKey key, ClientCall<T> call) throws ClientException {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlightGets.putIfAbsent(key, mine);
+        if (existing == null) {
+            try {
+                T result = call.call();
+                mine.complete(result);
+                return result;
+            } catch (ClientException | RuntimeException | Error ex) {
+                mine.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                this.inFlightGets.remove(key, mine);
+            }
+        } else {
+            try {
+                return (T) existing.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ClientException(ClientResponse.Status.SERVICE_UNAVAILABLE, "Interrupted while waiting for " + key.path);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof ClientException) {
+                    ClientException ce = (ClientException) cause;
+                    throw new ClientException(ce.getResponseStatus(), ce.getMessage());
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else {
+                    throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, cause.getMessage());
+                }
+            }
         }
     }
 
@@ -330,7 +757,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @throws ClientException if a status code other than 200 (OK) is returned.
      */
     protected ClientResponse doGetResponse(String path, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET).getRequestBuilder();
             requestBuilder = ensureJsonHeaders(headers, requestBuilder, false, true);
@@ -340,7 +767,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -371,18 +798,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @throws ClientException if a status code other than 200 (OK) is returned.
      */
     protected <T> T doGet(String path, GenericType<T> genericType, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
-        try {
-            WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET).getRequestBuilder();
-            requestBuilder = ensureJsonHeaders(headers, requestBuilder, false, true);
-            ClientResponse response = requestBuilder.get(ClientResponse.class);
-            errorIfStatusNotEqualTo(response, ClientResponse.Status.OK);
-            return response.getEntity(genericType);
-        } catch (ClientHandlerException ex) {
-            throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
-        } finally {
-            this.readLock.unlock();
-        }
+        return doGetEntity(path, null, headers, genericType.getType(), response -> response.getEntity(genericType));
     }
 
     /**
@@ -413,18 +829,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @throws ClientException if a status code other than 200 (OK) is returned.
      */
     protected <T> T doGet(String path, MultivaluedMap<String, String> queryParams, GenericType<T> genericType, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
-        try {
-            WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET, queryParams).getRequestBuilder();
-            requestBuilder = ensureJsonHeaders(headers, requestBuilder, false, true);
-            ClientResponse response = requestBuilder.get(ClientResponse.class);
-            errorIfStatusNotEqualTo(response, ClientResponse.Status.OK);
-            return response.getEntity(genericType);
-        } catch (ClientHandlerException ex) {
-            throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
-        } finally {
-            this.readLock.unlock();
-        }
+        return doGetEntity(path, queryParams, headers, genericType.getType(), response -> response.getEntity(genericType));
     }
 
     /**
@@ -458,7 +863,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @throws ClientException if a status code other than 200 (OK) is returned.
      */
     protected <T> T doPost(String path, MultivaluedMap<String, String> formParams, Class<T> cls, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             ensurePostFormHeaders(headers, requestBuilder, true, true);
@@ -468,7 +873,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -503,7 +908,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @throws ClientException if a status code other than 200 (OK) is returned.
      */
     protected <T> T doPost(String path, MultivaluedMap<String, String> formParams, GenericType<T> genericType, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             ensurePostFormHeaders(headers, requestBuilder, true, true);
@@ -513,7 +918,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -525,7 +930,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * Content) is returned.
      */
     protected void doPost(String path) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             ClientResponse response = getResourceWrapper().rewritten(path, HttpMethod.POST)
                     .post(ClientResponse.class);
@@ -534,7 +939,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -563,7 +968,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * Content) is returned.
      */
     protected void doPostForm(String path, MultivaluedMap<String, String> formParams, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             ensurePostFormHeaders(headers, requestBuilder, true, false);
@@ -573,7 +978,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -587,7 +992,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * Content) is returned.
      */
     protected void doPost(String path, Object o) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             requestBuilder = ensureJsonHeaders(null, requestBuilder, true, false);
@@ -597,7 +1002,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -612,7 +1017,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * Content) is returned.
      */
     protected void doPost(String path, Object o, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             requestBuilder = ensureJsonHeaders(headers, requestBuilder, true, false);
@@ -622,7 +1027,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -637,7 +1042,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * Content) is returned.
      */
     public void doPostMultipart(String path, FormDataMultiPart formDataMultiPart) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             ClientResponse response = getResourceWrapper()
                     .rewritten(path, HttpMethod.POST)
@@ -648,7 +1053,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -664,7 +1069,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * Content) is returned.
      */
     public void doPostMultipart(String path, FormDataMultiPart formDataMultiPart, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper()
                     .rewritten(path, HttpMethod.POST).getRequestBuilder();
@@ -676,7 +1081,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -708,7 +1113,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * Content) is returned.
      */
     protected void doPostMultipart(String path, InputStream inputStream, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             requestBuilder = ensurePostMultipartHeaders(headers, requestBuilder);
@@ -718,7 +1123,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -752,7 +1157,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * (Created) is returned.
      */
     protected URI doPostCreate(String path, Object o, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             requestBuilder = ensurePostCreateJsonHeaders(headers, requestBuilder, true, false);
@@ -766,7 +1171,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -800,7 +1205,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * (Created) is returned.
      */
     protected URI doPostCreateMultipart(String path, InputStream inputStream, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST).getRequestBuilder();
             requestBuilder = ensurePostCreateMultipartHeaders(headers, requestBuilder);
@@ -814,7 +1219,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -830,7 +1235,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * (Created) is returned.
      */
     protected URI doPostCreateMultipart(String path, FormDataMultiPart formDataMultiPart) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             ClientResponse response = getResourceWrapper()
                     .rewritten(path, HttpMethod.POST)
@@ -846,7 +1251,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -866,15 +1271,15 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @see #getResourceUrl() for the URL of the proxied server.
      */
     protected ClientResponse doPostForProxy(String path, InputStream inputStream, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST, parameterMap).getRequestBuilder();
             copyHeaders(headers, requestBuilder);
-            return requestBuilder.post(ClientResponse.class, inputStream);
+            return checkForChallenge(requestBuilder.post(ClientResponse.class, inputStream));
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
     
@@ -894,15 +1299,15 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @see #getResourceUrl() for the URL of the proxied server.
      */
     protected ClientResponse doPostForProxy(String path, String body, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.POST, parameterMap).getRequestBuilder();
             copyHeaders(headers, requestBuilder);
-            return requestBuilder.post(ClientResponse.class, body);
+            return checkForChallenge(requestBuilder.post(ClientResponse.class, body));
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -922,15 +1327,15 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @see #getResourceUrl() for the URL of the proxied server.
      */
     protected ClientResponse doPutForProxy(String path, InputStream inputStream, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.PUT, parameterMap).getRequestBuilder();
             copyHeaders(headers, requestBuilder);
-            return requestBuilder.put(ClientResponse.class, inputStream);
+            return checkForChallenge(requestBuilder.put(ClientResponse.class, inputStream));
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
     
@@ -950,15 +1355,15 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @see #getResourceUrl() for the URL of the proxied server.
      */
     protected ClientResponse doPutForProxy(String path, String contents, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.PUT, parameterMap).getRequestBuilder();
             copyHeaders(headers, requestBuilder);
-            return requestBuilder.put(ClientResponse.class, contents);
+            return checkForChallenge(requestBuilder.put(ClientResponse.class, contents));
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -976,15 +1381,15 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @see #getResourceUrl() for the URL of the proxied server.
      */
     protected ClientResponse doGetForProxy(String path, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET, parameterMap).getRequestBuilder();
             copyHeaders(headers, requestBuilder);
-            return requestBuilder.get(ClientResponse.class);
+            return checkForChallenge(requestBuilder.get(ClientResponse.class));
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -1002,18 +1407,342 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * @see #getResourceUrl() for the URL of the proxied server.
      */
     protected ClientResponse doDeleteForProxy(String path, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.DELETE, parameterMap).getRequestBuilder();
             copyHeaders(headers, requestBuilder);
-            return requestBuilder.delete(ClientResponse.class);
+            return checkForChallenge(requestBuilder.delete(ClientResponse.class));
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
+    /**
+     * Asynchronously deletes the resource specified by the path. Passes no
+     * HTTP headers.
+     *
+     * @param path the path to the resource. Cannot be <code>null</code>.
+     * @return a future that completes when the resource has been deleted, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 204 (No Content), 202 (Accepted), and 200 (OK) is
+     * returned.
+     */
+    protected CompletableFuture<Void> doDeleteAsync(String path) {
+        return doDeleteAsync(path, null);
+    }
+
+    /**
+     * Asynchronously deletes the resource specified by the path.
+     *
+     * @param path the path to the resource. Cannot be <code>null</code>.
+     * @param headers any HTTP headers. Can be <code>null</code>.
+     * @return a future that completes when the resource has been deleted, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 204 (No Content), 202 (Accepted), and 200 (OK) is
+     * returned.
+     */
+    protected CompletableFuture<Void> doDeleteAsync(String path, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> {
+            doDelete(path, headers);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously updates the resource specified by the path, for
+     * situations where the nature of the update is completely specified by
+     * the path alone.
+     *
+     * @param path the path to the resource. Cannot be <code>null</code>.
+     * @return a future that completes when the resource has been updated, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 204 (No Content) and 200 (OK) is returned.
+     */
+    protected CompletableFuture<Void> doPutAsync(String path) {
+        return supplyAsync(() -> {
+            doPut(path);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously updates the resource specified by the path. Sends to the
+     * server a Content Type header for JSON.
+     *
+     * @param path the path to the resource. Cannot be <code>null</code>.
+     * @param o the updated object, will be transmitted as JSON.
+     * @return a future that completes when the resource has been updated, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 204 (No Content) and 200 (OK) is returned.
+     */
+    protected CompletableFuture<Void> doPutAsync(String path, Object o) {
+        return doPutAsync(path, o, null);
+    }
+
+    /**
+     * Asynchronously updates the resource specified by the path.
+     *
+     * @param path the path to the resource. Cannot be <code>null</code>.
+     * @param o the updated object, will be transmitted as JSON.
+     * @param headers any headers to pass along. Can be <code>null</code>.
+     * @return a future that completes when the resource has been updated, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 204 (No Content) and 200 (OK) is returned.
+     */
+    protected CompletableFuture<Void> doPutAsync(String path, Object o, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> {
+            doPut(path, o, headers);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously gets the resource specified by the path. Sends to the
+     * server an Accepts header for JSON.
+     *
+     * @param <T> the type of the resource.
+     * @param path the path to the resource. Cannot be <code>null</code>.
+     * @param cls the type of the resource. Cannot be <code>null</code>.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, Class<T> cls) {
+        return doGetAsync(path, cls, null);
+    }
+
+    /**
+     * Asynchronously gets the resource specified by the path.
+     *
+     * @param <T> the type of the resource.
+     * @param path the path to the resource. Cannot be <code>null</code>.
+     * @param cls the type of the resource. Cannot be <code>null</code>.
+     * @param headers any headers. If no Accepts header is provided, an Accepts
+     * header for JSON will be added.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, Class<T> cls, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> doGet(path, cls, headers));
+    }
+
+    /**
+     * Asynchronously gets the resource specified by the path and the provided
+     * query parameters. Sends to the server an Accepts header for JSON.
+     *
+     * @param <T> the type of the resource.
+     * @param path the path to the resource.
+     * @param queryParams any query parameters. Cannot be <code>null</code>.
+     * @param cls the type of the resource. Cannot be <code>null</code>.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, MultivaluedMap<String, String> queryParams, Class<T> cls) {
+        return doGetAsync(path, queryParams, cls, null);
+    }
+
+    /**
+     * Asynchronously gets the resource specified by the path and the provided
+     * query parameters.
+     *
+     * @param <T> the type of the resource.
+     * @param path the path to the resource.
+     * @param queryParams any query parameters. Cannot be <code>null</code>.
+     * @param cls the type of the resource. Cannot be <code>null</code>.
+     * @param headers any headers. If no Accepts header is provided, an Accepts
+     * header for JSON will be added.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, MultivaluedMap<String, String> queryParams, Class<T> cls, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> doGet(path, queryParams, cls, headers));
+    }
+
+    /**
+     * Asynchronously gets the requested resource. Adds an appropriate Accepts
+     * header.
+     *
+     * @param <T> the type of the requested resource.
+     * @param path the path to the resource.
+     * @param genericType the type of the requested resource.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, GenericType<T> genericType) {
+        return doGetAsync(path, genericType, null);
+    }
+
+    /**
+     * Asynchronously gets the requested resource.
+     *
+     * @param <T> the type of the requested resource.
+     * @param path the path to the resource.
+     * @param genericType the type of the requested resource.
+     * @param headers any headers. If no Accepts header is provided, it adds an
+     * Accepts header for JSON.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, GenericType<T> genericType, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> doGet(path, genericType, headers));
+    }
+
+    /**
+     * Asynchronously gets the requested resource. Adds an appropriate Accepts
+     * header.
+     *
+     * @param <T> the type of the requested resource.
+     * @param path the path to the resource.
+     * @param queryParams any query parameters to send.
+     * @param genericType the type of the requested resource.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, MultivaluedMap<String, String> queryParams, GenericType<T> genericType) {
+        return doGetAsync(path, queryParams, genericType, null);
+    }
+
+    /**
+     * Asynchronously gets the requested resource.
+     *
+     * @param <T> the type of the requested resource.
+     * @param path the path to the resource.
+     * @param queryParams any query parameters to send.
+     * @param genericType the type of the requested resource.
+     * @param headers any headers. If no Accepts header is provided, it adds an
+     * Accepts header for JSON.
+     * @return a future that completes with the resource, or that completes
+     * exceptionally with a {@link ClientException} if a status code other
+     * than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doGetAsync(String path, MultivaluedMap<String, String> queryParams, GenericType<T> genericType, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> doGet(path, queryParams, genericType, headers));
+    }
+
+    /**
+     * Asynchronously submits a form and gets back a JSON object. Adds
+     * appropriate Accepts and Content Type headers.
+     *
+     * @param <T> the type of object that is expected in the response.
+     * @param path the API to call.
+     * @param formParams the form parameters to send.
+     * @param cls the type of object that is expected in the response.
+     * @return a future that completes with the object in the response, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doPostAsync(String path, MultivaluedMap<String, String> formParams, Class<T> cls) {
+        return doPostAsync(path, formParams, cls, null);
+    }
+
+    /**
+     * Asynchronously submits a form and gets back a JSON object.
+     *
+     * @param <T> the type of object that is expected in the response.
+     * @param path the API to call.
+     * @param formParams the form parameters to send.
+     * @param cls the type of object that is expected in the response.
+     * @param headers any headers. If there is no Accepts header, an Accepts
+     * header is added for JSON. If there is no Content Type header, a Content
+     * Type header is added for forms.
+     * @return a future that completes with the object in the response, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doPostAsync(String path, MultivaluedMap<String, String> formParams, Class<T> cls, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> doPost(path, formParams, cls, headers));
+    }
+
+    /**
+     * Asynchronously submits a form and gets back a JSON object. Adds
+     * appropriate Accepts and Content Type headers.
+     *
+     * @param <T> the type of object that is expected in the response.
+     * @param path the API to call.
+     * @param formParams the form parameters to send.
+     * @param genericType the type of object that is expected in the response.
+     * @return a future that completes with the object in the response, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doPostAsync(String path, MultivaluedMap<String, String> formParams, GenericType<T> genericType) {
+        return doPostAsync(path, formParams, genericType, null);
+    }
+
+    /**
+     * Asynchronously submits a form and gets back a JSON object.
+     *
+     * @param <T> the type of object that is expected in the response.
+     * @param path the API to call.
+     * @param formParams the form parameters to send.
+     * @param genericType the type of object that is expected in the response.
+     * @param headers any headers. If there is no Accepts header, an Accepts
+     * header is added for JSON. If there is no Content Type header, a Content
+     * Type header is added for forms.
+     * @return a future that completes with the object in the response, or
+     * that completes exceptionally with a {@link ClientException} if a status
+     * code other than 200 (OK) is returned.
+     */
+    protected <T> CompletableFuture<T> doPostAsync(String path, MultivaluedMap<String, String> formParams, GenericType<T> genericType, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> doPost(path, formParams, genericType, headers));
+    }
+
+    /**
+     * Asynchronously makes a POST call to the specified path.
+     *
+     * @param path the path to call.
+     * @return a future that completes when the call has returned, or that
+     * completes exceptionally with a {@link ClientException} if a status code
+     * other than 200 (OK) and 204 (No Content) is returned.
+     */
+    protected CompletableFuture<Void> doPostAsync(String path) {
+        return supplyAsync(() -> {
+            doPost(path);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously makes a POST request with the provided object in the
+     * body as JSON. Adds a Content Type header for JSON.
+     *
+     * @param path the API to call.
+     * @param o the object to send.
+     * @return a future that completes when the call has returned, or that
+     * completes exceptionally with a {@link ClientException} if a status code
+     * other than 200 (OK) and 204 (No Content) is returned.
+     */
+    protected CompletableFuture<Void> doPostAsync(String path, Object o) {
+        return doPostAsync(path, o, null);
+    }
+
+    /**
+     * Asynchronously makes a POST request with the provided object in the
+     * body as JSON.
+     *
+     * @param path the API to call.
+     * @param o the object to send.
+     * @param headers any headers. If no Content Type header is provided, this
+     * method adds a Content Type header for JSON.
+     * @return a future that completes when the call has returned, or that
+     * completes exceptionally with a {@link ClientException} if a status code
+     * other than 200 (OK) and 204 (No Content) is returned.
+     */
+    protected CompletableFuture<Void> doPostAsync(String path, Object o, MultivaluedMap<String, String> headers) {
+        return supplyAsync(() -> {
+            doPost(path, o, headers);
+            return null;
+        });
+    }
+
     /**
      * If there is an unexpected status code, this method gets the status
      * message, closes the response, and throws an exception.
@@ -1066,7 +1795,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * (OK).
      */
     String doGet(String path, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET).getRequestBuilder();
             requestBuilder = ensureJsonHeaders(headers, requestBuilder, false, true);
@@ -1076,7 +1805,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -1093,7 +1822,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
      * (OK).
      */
     String doGet(String path, MultivaluedMap<String, String> queryParams, MultivaluedMap<String, String> headers) throws ClientException {
-        this.readLock.lock();
+        enter();
         try {
             WebResource.Builder requestBuilder = getResourceWrapper().rewritten(path, HttpMethod.GET, queryParams).getRequestBuilder();
             requestBuilder = ensureJsonHeaders(headers, requestBuilder, false, true);
@@ -1103,7 +1832,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         } catch (ClientHandlerException ex) {
             throw new ClientException(ClientResponse.Status.INTERNAL_SERVER_ERROR, ex.getMessage());
         } finally {
-            this.readLock.unlock();
+            exit();
         }
     }
 
@@ -1116,6 +1845,7 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
     private void errorIf(ClientResponse response,
             ClientResponse.Status[] status, boolean bool)
             throws ClientException {
+        checkForChallenge(response);
         ClientResponse.Status clientResponseStatus
                 = response.getClientResponseStatus();
         if (bool) {
@@ -1129,6 +1859,104 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Registers the start of a call. Every successful call to this method
+     * must be paired with a call to {@link #exit() }.
+     *
+     * @throws ClientException with status 503 (Service Unavailable) if the
+     * client is closing or closed.
+     */
+    private void enter() throws ClientException {
+        this.inFlight.incrementAndGet();
+        if (this.state.get() != OPEN) {
+            this.inFlight.decrementAndGet();
+            throw new ClientException(ClientResponse.Status.SERVICE_UNAVAILABLE, "Client is closed");
+        }
+    }
+
+    /**
+     * Registers the end of a call.
+     */
+    private void exit() {
+        this.webResourceWrapperFactory.release();
+        this.inFlight.decrementAndGet();
+    }
+
+    /**
+     * Waits for in-flight calls to finish.
+     *
+     * @param timeoutNanos the maximum time to wait in nanoseconds.
+     * @return <code>true</code> if there are no more in-flight calls,
+     * <code>false</code> if the timeout elapsed or the thread was interrupted
+     * first.
+     */
+    private boolean awaitInFlight(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (this.inFlight.get() > 0) {
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(CLOSE_POLL_NANOS);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a blocking client call on the async executor. The caller's CAS
+     * assertion is made available to the executing thread so that proxy
+     * tickets can be obtained.
+     *
+     * @param <T> the type of the call's result.
+     * @param call the call to run.
+     * @return a future that completes with the call's result, or that
+     * completes exceptionally with the {@link ClientException}, runtime
+     * exception or error thrown by the call.
+     */
+    private <T> CompletableFuture<T> supplyAsync(ClientCall<T> call) {
+        Assertion assertion = AssertionHolder.getAssertion();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            getAsyncExecutor().execute(() -> {
+                Assertion previous = AssertionHolder.getAssertion();
+                AssertionHolder.setAssertion(assertion);
+                try {
+                    future.complete(call.call());
+                } catch (ClientException | RuntimeException | Error ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    if (previous != null) {
+                        AssertionHolder.setAssertion(previous);
+                    } else {
+                        AssertionHolder.clear();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(new ClientException(ClientResponse.Status.SERVICE_UNAVAILABLE, ex.getMessage()));
+        }
+        return future;
+    }
+
+    /**
+     * Tells the web resource wrapper factory to stop relying on the client's
+     * session with the service if the service responded with a 401
+     * (Unauthorized) or 302 (Found) challenge.
+     *
+     * @param response the response. Cannot be <code>null</code>.
+     * @return the response.
+     */
+    private ClientResponse checkForChallenge(ClientResponse response) {
+        int status = response.getStatus();
+        if (status == ClientResponse.Status.UNAUTHORIZED.getStatusCode()
+                || status == ClientResponse.Status.FOUND.getStatusCode()) {
+            this.webResourceWrapperFactory.invalidate();
+        }
+        return response;
+    }
+
     /**
      * Tests array membership.
      *
@@ -1328,4 +2156,94 @@ public abstract class EurekaClinicalClient implements AutoCloseable {
         }
         return requestBuilder;
     }
+
+    /**
+     * A blocking client call.
+     *
+     * @param <T> the type of the call's result.
+     */
+    @FunctionalInterface
+    private interface ClientCall<T> {
+
+        T call() throws ClientException;
+    }
+
+    /**
+     * Reads the resource from a response.
+     *
+     * @param <T> the type of the resource.
+     */
+    @FunctionalInterface
+    private interface EntityReader<T> {
+
+        T read(ClientResponse response);
+    }
+
+    /**
+     * Identifies a GET call for coalescing and response caching.
+     */
+    private static final class GetKey {
+
+        private final URI resourceUrl;
+        private final String username;
+        private final String path;
+        private final Map<String, List<String>> queryParams;
+        private final Map<String, List<String>> headers;
+        private final Type type;
+        private final int hashCode;
+
+        GetKey(URI inResourceUrl, String inPath, MultivaluedMap<String, String> inQueryParams, MultivaluedMap<String, String> inHeaders, Type inType) {
+            this.resourceUrl = inResourceUrl;
+            Assertion assertion = AssertionHolder.getAssertion();
+            this.username = assertion != null ? assertion.getPrincipal().getName() : null;
+            this.path = inPath;
+            this.queryParams = inQueryParams != null ? new HashMap<>(inQueryParams) : Collections.emptyMap();
+            this.headers = inHeaders != null ? new HashMap<>(inHeaders) : Collections.emptyMap();
+            this.type = inType;
+            this.hashCode = Objects.hash(this.resourceUrl, this.username, this.path, this.queryParams, this.headers, this.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final GetKey other = (GetKey) obj;
+            return this.hashCode == other.hashCode
+                    && Objects.equals(this.path, other.path)
+                    && Objects.equals(this.resourceUrl, other.resourceUrl)
+                    && Objects.equals(this.username, other.username)
+                    && Objects.equals(this.type, other.type)
+                    && Objects.equals(this.queryParams, other.queryParams)
+                    && Objects.equals(this.headers, other.headers);
+        }
+    }
+
+    /**
+     * Lazily creates the pool of daemon threads that is used by the
+     * <code>do*Async</code> methods when no executor has been set.
+     */
+    private static final class DefaultAsyncExecutorHolder {
+
+        private static final ExecutorService EXECUTOR;
+
+        static {
+            AtomicInteger threadNumber = new AtomicInteger();
+            EXECUTOR = Executors.newFixedThreadPool(
+                    Math.max(8, Runtime.getRuntime().availableProcessors() * 8),
+                    (Runnable r) -> {
+                        Thread thread = new Thread(r, "EurekaClinicalClient-async-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.conn.ClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically closes expired and idle connections in connection pools. All
+ * pools share a single daemon thread.
+ *
+ * @author Andrew Post
+ */
+final class IdleConnectionEvictor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdleConnectionEvictor.class);
+
+    private static final ScheduledExecutorService EXECUTOR
+            = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread thread = new Thread(r, "EurekaClinicalClient-idle-connection-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private IdleConnectionEvictor() {
+    }
+
+    /**
+     * Starts evicting connections from a pool.
+     *
+     * @param connManager the pool. Cannot be <code>null</code>.
+     * @param config the eviction settings. Cannot be <code>null</code>.
+     * @return a future that may be cancelled to stop evicting connections
+     * from the pool.
+     */
+    static ScheduledFuture<?> schedule(ClientConnectionManager connManager, ConnectionPoolConfig config) {
+        long idleTimeout = config.getIdleConnectionTimeout();
+        long interval = config.getIdleConnectionEvictionInterval();
+        return EXECUTOR.scheduleWithFixedDelay(() -> {
+            try {
+                connManager.closeExpiredConnections();
+                if (idleTimeout > 0) {
+                    connManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Error evicting idle connections", ex);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+}
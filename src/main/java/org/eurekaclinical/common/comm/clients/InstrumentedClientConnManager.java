@@ -0,0 +1,131 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+/**
+ * A thread-safe connection manager that is sized from a
+ * {@link ConnectionPoolConfig} and keeps track of how many connections are
+ * leased and how many calls are waiting for one.
+ *
+ * @author Andrew Post
+ */
+class InstrumentedClientConnManager extends ThreadSafeClientConnManager {
+
+    private final AtomicInteger leased;
+    private final AtomicInteger pending;
+    private final boolean shared;
+    private volatile boolean sharedShutdown;
+
+    InstrumentedClientConnManager(ConnectionPoolConfig inConfig) {
+        this(inConfig, false);
+    }
+
+    /**
+     * Creates a connection manager.
+     *
+     * @param inConfig the pool settings. Cannot be <code>null</code>.
+     * @param inShared <code>true</code> if the connection manager is shared
+     * by multiple HTTP clients, in which case {@link #shutdown() } is ignored
+     * and only {@link #shutdownShared() } shuts it down.
+     */
+    InstrumentedClientConnManager(ConnectionPoolConfig inConfig, boolean inShared) {
+        super(SchemeRegistryFactory.createDefault(),
+                inConfig.getConnectionTimeToLive(), TimeUnit.MILLISECONDS);
+        setMaxTotal(inConfig.getMaxTotal());
+        setDefaultMaxPerRoute(inConfig.getMaxPerRoute());
+        this.leased = new AtomicInteger();
+        this.pending = new AtomicInteger();
+        this.shared = inShared;
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        return new ClientConnectionRequest() {
+
+            @Override
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit) throws InterruptedException, ConnectionPoolTimeoutException {
+                pending.incrementAndGet();
+                try {
+                    ManagedClientConnection conn = request.getConnection(timeout, tunit);
+                    leased.incrementAndGet();
+                    return conn;
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+
+            @Override
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) {
+        try {
+            super.releaseConnection(conn, validDuration, timeUnit);
+        } finally {
+            this.leased.decrementAndGet();
+        }
+    }
+
+    /**
+     * Shuts down the connection manager unless it is shared, so that
+     * destroying one HTTP client does not close connections that other
+     * clients are using.
+     */
+    @Override
+    public void shutdown() {
+        if (!this.shared || this.sharedShutdown) {
+            super.shutdown();
+        }
+    }
+
+    /**
+     * Shuts down a shared connection manager.
+     */
+    void shutdownShared() {
+        this.sharedShutdown = true;
+        super.shutdown();
+    }
+
+    ConnectionPoolStats getStats() {
+        int leasedCount = this.leased.get();
+        return new ConnectionPoolStats(
+                leasedCount,
+                this.pending.get(),
+                Math.max(0, getConnectionsInPool() - leasedCount),
+                getMaxTotal(),
+                getDefaultMaxPerRoute());
+    }
+
+}
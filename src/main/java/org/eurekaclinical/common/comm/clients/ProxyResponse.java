@@ -21,18 +21,38 @@ package org.eurekaclinical.common.comm.clients;
  */
 
 import com.sun.jersey.api.client.ClientResponse;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * The backend response to a proxied call. Close it after reading the
+ * response to release its connection and its slot in the route's
+ * {@link ConcurrencyLimiter}, if any.
  *
  * @author arpost
  */
-public class ProxyResponse {
+public class ProxyResponse implements AutoCloseable {
     private final ClientResponse clientResponse;
     private final ReplacementPathAndClient replacementPathAndClient;
+    private final Runnable onClose;
+    private final AtomicBoolean closed;
 
     public ProxyResponse(ClientResponse inClientResponse, ReplacementPathAndClient inReplacementPathAndClient) {
+        this(inClientResponse, inReplacementPathAndClient, null);
+    }
+
+    /**
+     * Creates a proxy response.
+     *
+     * @param inClientResponse the backend response.
+     * @param inReplacementPathAndClient the matching route.
+     * @param inOnClose what to run once when the response is closed, or
+     * <code>null</code>.
+     */
+    public ProxyResponse(ClientResponse inClientResponse, ReplacementPathAndClient inReplacementPathAndClient, Runnable inOnClose) {
         this.clientResponse = inClientResponse;
         this.replacementPathAndClient = inReplacementPathAndClient;
+        this.onClose = inOnClose;
+        this.closed = new AtomicBoolean();
     }
 
     public ClientResponse getClientResponse() {
@@ -42,5 +62,22 @@ public class ProxyResponse {
     public ReplacementPathAndClient getReplacementPathAndClient() {
         return replacementPathAndClient;
     }
+
+    /**
+     * Closes the backend response. Calling this method more than once has no
+     * effect.
+     */
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true)) {
+            try {
+                this.clientResponse.close();
+            } finally {
+                if (this.onClose != null) {
+                    this.onClose.run();
+                }
+            }
+        }
+    }
     
 }
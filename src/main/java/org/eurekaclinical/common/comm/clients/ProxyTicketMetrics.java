@@ -0,0 +1,62 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of CAS proxy ticket requests.
+ *
+ * @author Andrew Post
+ */
+final class ProxyTicketMetrics {
+
+    private final LongAdder requests;
+    private final LongAdder failures;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    ProxyTicketMetrics() {
+        this.requests = new LongAdder();
+        this.failures = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    void record(long nanos, boolean success) {
+        this.requests.increment();
+        if (!success) {
+            this.failures.increment();
+        }
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulate(nanos);
+    }
+
+    ProxyTicketStats getStats() {
+        return new ProxyTicketStats(
+                this.requests.sum(),
+                this.failures.sum(),
+                this.totalNanos.sum(),
+                this.maxNanos.get());
+    }
+
+}
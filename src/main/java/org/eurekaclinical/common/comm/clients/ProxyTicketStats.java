@@ -0,0 +1,95 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A snapshot of how long a {@link EurekaClinicalClient} has spent getting
+ * CAS proxy tickets.
+ *
+ * @author Andrew Post
+ */
+public final class ProxyTicketStats {
+
+    private final long requests;
+    private final long failures;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    ProxyTicketStats(long inRequests, long inFailures, long inTotalNanos, long inMaxNanos) {
+        this.requests = inRequests;
+        this.failures = inFailures;
+        this.totalNanos = inTotalNanos;
+        this.maxNanos = inMaxNanos;
+    }
+
+    /**
+     * Gets the number of proxy tickets that were requested from CAS.
+     *
+     * @return the number of requests.
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of proxy ticket requests that returned no ticket or
+     * failed with an exception.
+     *
+     * @return the number of failed requests.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets the total time spent requesting proxy tickets.
+     *
+     * @return the total time in milliseconds.
+     */
+    public double getTotalMillis() {
+        return totalNanos / 1e6;
+    }
+
+    /**
+     * Gets the mean time spent requesting a proxy ticket.
+     *
+     * @return the mean time in milliseconds, or 0 if no tickets have been
+     * requested.
+     */
+    public double getMeanMillis() {
+        return requests == 0 ? 0 : totalNanos / 1e6 / requests;
+    }
+
+    /**
+     * Gets the longest time spent requesting a proxy ticket.
+     *
+     * @return the maximum time in milliseconds.
+     */
+    public double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return "ProxyTicketStats{" + "requests=" + requests + ", failures=" + failures + ", meanMillis=" + getMeanMillis() + ", maxMillis=" + getMaxMillis() + '}';
+    }
+
+}
@@ -19,6 +19,7 @@ package org.eurekaclinical.common.comm.clients;
  * limitations under the License.
  * #L%
  */
+import com.sun.jersey.api.client.ClientResponse;
 import java.io.InputStream;
 import javax.inject.Inject;
 import javax.ws.rs.core.MultivaluedMap;
@@ -36,36 +37,91 @@ public class ProxyingClient {
         this.config = inConfig;
     }
 
+    /**
+     * Gets the timeout of the route that matches a path.
+     *
+     * @param path the path.
+     * @return the timeout in milliseconds, or zero or less if there is no
+     * matching route or the route has no timeout.
+     */
+    public long getTimeout(String path) {
+        ReplacementPathAndClient replacementPathAndClient = this.config.getReplacementPathAndClient(path);
+        return replacementPathAndClient != null ? replacementPathAndClient.getTimeout() : 0;
+    }
+
     public ProxyResponse proxyPost(String path, InputStream inputStream,MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers)
             throws ClientException {
-        ReplacementPathAndClient replacementPathAndClient = this.config.getReplacementPathAndClient(path);
+        ReplacementPathAndClient replacementPathAndClient = route(path);
         EurekaClinicalClient client = replacementPathAndClient.getClient();
         String replacementPath = replacementPathAndClient.getPath();
-        return new ProxyResponse(client.doPostForProxy(replacementPath, inputStream, parameterMap, headers), replacementPathAndClient);
+        return call(replacementPathAndClient, () -> client.doPostForProxy(replacementPath, inputStream, parameterMap, headers));
     }
 
     public ProxyResponse proxyDelete(String path, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers)
             throws ClientException {
-        ReplacementPathAndClient replacementPathAndClient = this.config.getReplacementPathAndClient(path);
+        ReplacementPathAndClient replacementPathAndClient = route(path);
         EurekaClinicalClient client = replacementPathAndClient.getClient();
         String replacementPath = replacementPathAndClient.getPath();
-        return new ProxyResponse(client.doDeleteForProxy(replacementPath, parameterMap, headers), replacementPathAndClient);
+        return call(replacementPathAndClient, () -> client.doDeleteForProxy(replacementPath, parameterMap, headers));
     }
 
     public ProxyResponse proxyPut(String path, InputStream inputStream, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers)
             throws ClientException {
-        ReplacementPathAndClient replacementPathAndClient = this.config.getReplacementPathAndClient(path);
+        ReplacementPathAndClient replacementPathAndClient = route(path);
         EurekaClinicalClient client = replacementPathAndClient.getClient();
         String replacementPath = replacementPathAndClient.getPath();
-        return new ProxyResponse(client.doPutForProxy(replacementPath, inputStream, parameterMap, headers), replacementPathAndClient);
+        return call(replacementPathAndClient, () -> client.doPutForProxy(replacementPath, inputStream, parameterMap, headers));
     }
 
     public ProxyResponse proxyGet(String path, MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> headers)
             throws ClientException {
-        ReplacementPathAndClient replacementPathAndClient = this.config.getReplacementPathAndClient(path);
+        ReplacementPathAndClient replacementPathAndClient = route(path);
         EurekaClinicalClient client = replacementPathAndClient.getClient();
         String replacementPath = replacementPathAndClient.getPath();
-        return new ProxyResponse(client.doGetForProxy(replacementPath, parameterMap, headers), replacementPathAndClient);
+        return call(replacementPathAndClient, () -> client.doGetForProxy(replacementPath, parameterMap, headers));
+    }
+
+    /**
+     * Makes a proxied call within the route's concurrency limit, if it has
+     * one. The slot is freed when the returned response is closed, or right
+     * away if the call fails. The limiter is told how long the backend took
+     * to respond and whether it failed.
+     */
+    private static ProxyResponse call(ReplacementPathAndClient replacementPathAndClient, BackendCall call) throws ClientException {
+        ConcurrencyLimiter limiter = replacementPathAndClient.getRoute().getConcurrencyLimiter();
+        if (limiter == null) {
+            return new ProxyResponse(call.call(), replacementPathAndClient);
+        }
+        limiter.acquire();
+        long start = System.nanoTime();
+        boolean acquiredByResponse = false;
+        try {
+            ClientResponse clientResponse = call.call();
+            long latency = System.nanoTime() - start;
+            boolean failed = clientResponse.getStatus() >= 500;
+            ProxyResponse proxyResponse = new ProxyResponse(clientResponse, replacementPathAndClient,
+                    () -> limiter.release(latency, failed));
+            acquiredByResponse = true;
+            return proxyResponse;
+        } finally {
+            if (!acquiredByResponse) {
+                limiter.release(System.nanoTime() - start, true);
+            }
+        }
+    }
+
+    private ReplacementPathAndClient route(String path) throws ClientException {
+        ReplacementPathAndClient replacementPathAndClient = path != null ? this.config.getReplacementPathAndClient(path) : null;
+        if (replacementPathAndClient == null) {
+            throw new ClientException(ClientResponse.Status.NOT_FOUND, "No route for " + path);
+        }
+        return replacementPathAndClient;
+    }
+
+    @FunctionalInterface
+    private interface BackendCall {
+
+        ClientResponse call() throws ClientException;
     }
 
 }
@@ -1,6 +1,5 @@
 package org.eurekaclinical.common.comm.clients;
 
-import java.util.regex.Pattern;
 
 /*-
  * #%L
@@ -28,13 +27,15 @@ import java.util.regex.Pattern;
  */
 public class ReplacementPathAndClient {
     private final String path;
+    private final Route route;
     private final EurekaClinicalClient client;
-    private final Pattern pattern;
+    private final RouteIndex.ReversePrefix[] reversePrefixes;
 
-    ReplacementPathAndClient(String inPath, EurekaClinicalClient inClient, Pattern inPattern) {
+    ReplacementPathAndClient(String inPath, Route inRoute, RouteIndex.ReversePrefix[] inReversePrefixes) {
         this.path = inPath;
-        this.client = inClient;
-        this.pattern = inPattern;
+        this.route = inRoute;
+        this.client = inRoute.getClient();
+        this.reversePrefixes = inReversePrefixes != null ? inReversePrefixes : new RouteIndex.ReversePrefix[0];
     }
 
     public String getPath() {
@@ -44,9 +45,61 @@ public class ReplacementPathAndClient {
     public EurekaClinicalClient getClient() {
         return client;
     }
+
+    /**
+     * Gets the route that matched.
+     *
+     * @return the route.
+     */
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Gets the timeout of the matching route.
+     *
+     * @return the timeout in milliseconds, or zero or less for the proxy
+     * servlet's default.
+     */
+    public long getTimeout() {
+        return this.route.getTimeout();
+    }
     
+    /**
+     * Gets the proxy URL.
+     *
+     * @param proxyResourceUrl the URL of the proxy.
+     * @return <code>proxyResourceUrl</code>.
+     * @deprecated Use {@link #revertPath(java.lang.String, java.lang.String) }
+     * to map a backend URL, such as the value of a <code>Location</code>
+     * header, to the corresponding proxy URL.
+     */
+    @Deprecated
     public String revertPath(String proxyResourceUrl) {
-        return this.pattern.matcher(this.client.getResourceUrl().toString()).replaceFirst(proxyResourceUrl);
+        return proxyResourceUrl;
+    }
+
+    /**
+     * Maps a URL or absolute path of this client's backend service, for
+     * example, the value of a <code>Location</code> header, to the
+     * corresponding URL of the proxy by swapping the backend prefix of the
+     * longest matching route of this client for the route's proxy path
+     * prefix.
+     *
+     * @param location the backend URL or path.
+     * @param proxyBaseUrl the URL to which the proxy servlet is mapped,
+     * without a trailing slash.
+     * @return the proxy URL, or <code>location</code> unchanged if it does
+     * not belong to any of this client's routes.
+     */
+    public String revertPath(String location, String proxyBaseUrl) {
+        for (RouteIndex.ReversePrefix reversePrefix : this.reversePrefixes) {
+            String reverted = reversePrefix.revert(location, proxyBaseUrl);
+            if (reverted != null) {
+                return reverted;
+            }
+        }
+        return location;
     }
     
 }
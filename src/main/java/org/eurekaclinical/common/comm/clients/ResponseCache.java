@@ -0,0 +1,340 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * A bounded, in-memory cache of the responses to GET calls made by a
+ * {@link EurekaClinicalClient}. Install it with
+ * {@link EurekaClinicalClient#setResponseCache(ResponseCache) }. Only calls
+ * whose paths start with one of the cache's path prefixes are cached.
+ *
+ * The cache honors the <code>Cache-Control</code> (<code>no-store</code>,
+ * <code>no-cache</code> and <code>max-age</code>) and <code>Expires</code>
+ * response headers. Responses that are no longer fresh, but that have an
+ * <code>ETag</code> or <code>Last-Modified</code> header, are revalidated
+ * with a conditional GET, and a 304 (Not Modified) response is answered with
+ * the cached body. Responses with a <code>Vary</code> header are not cached.
+ * When the total size of the cached response bodies exceeds the maximum
+ * weight, the least recently used responses are evicted.
+ *
+ * The cache holds response bodies rather than deserialized objects, and the
+ * client deserializes the body again for every caller, so callers may
+ * modify the objects that they get. This class is thread-safe.
+ *
+ * @author Andrew Post
+ */
+public class ResponseCache {
+
+    private static final String NO_STORE = "no-store";
+    private static final String NO_CACHE = "no-cache";
+    private static final String MAX_AGE = "max-age=";
+
+    private final long maxWeight;
+    private final List<String> pathPrefixes;
+
+    /**
+     * Guarded by itself.
+     */
+    private final LinkedHashMap<Object, Entry> entries;
+    private long weight;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder revalidations;
+    private final LongAdder evictions;
+
+    /**
+     * Creates a cache.
+     *
+     * @param inMaxWeight the maximum total size of the cached response
+     * bodies, in bytes. Must be positive.
+     * @param inPathPrefixes the prefixes of the paths of calls to cache. If
+     * none are given, no calls are cached until prefixes are added with
+     * {@link #addPathPrefix(java.lang.String) }.
+     */
+    public ResponseCache(long inMaxWeight, String... inPathPrefixes) {
+        if (inMaxWeight < 1) {
+            throw new IllegalArgumentException("inMaxWeight must be positive");
+        }
+        this.maxWeight = inMaxWeight;
+        this.pathPrefixes = new CopyOnWriteArrayList<>();
+        for (String pathPrefix : inPathPrefixes) {
+            addPathPrefix(pathPrefix);
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.revalidations = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Turns on caching for calls whose paths start with the given prefix.
+     *
+     * @param pathPrefix the path prefix. Cannot be <code>null</code>.
+     */
+    public final void addPathPrefix(String pathPrefix) {
+        if (pathPrefix == null) {
+            throw new IllegalArgumentException("pathPrefix cannot be null");
+        }
+        this.pathPrefixes.add(pathPrefix);
+    }
+
+    /**
+     * Turns off caching for calls whose paths start with the given prefix.
+     * Responses that are already cached remain until they are evicted or
+     * the cache is cleared.
+     *
+     * @param pathPrefix the path prefix.
+     */
+    public void removePathPrefix(String pathPrefix) {
+        this.pathPrefixes.remove(pathPrefix);
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.weight = 0;
+        }
+    }
+
+    /**
+     * Gets a snapshot of the cache's counters.
+     *
+     * @return the statistics. Guaranteed not <code>null</code>.
+     */
+    public ResponseCacheStats getStats() {
+        int size;
+        long currentWeight;
+        synchronized (this.entries) {
+            size = this.entries.size();
+            currentWeight = this.weight;
+        }
+        return new ResponseCacheStats(this.hits.sum(), this.misses.sum(),
+                this.revalidations.sum(), this.evictions.sum(), size, currentWeight);
+    }
+
+    boolean isEnabledFor(String path) {
+        for (String pathPrefix : this.pathPrefixes) {
+            if (path.startsWith(pathPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Entry get(Object key) {
+        synchronized (this.entries) {
+            return this.entries.get(key);
+        }
+    }
+
+    void recordHit() {
+        this.hits.increment();
+    }
+
+    void recordMiss() {
+        this.misses.increment();
+    }
+
+    void recordRevalidation() {
+        this.revalidations.increment();
+    }
+
+    /**
+     * Caches a response if its headers allow it.
+     *
+     * @param key identifies the call.
+     * @param body the response body. Must not be modified afterward.
+     * @param headers the response headers, which are kept with the body.
+     * Must not be modified afterward.
+     */
+    void put(Object key, byte[] body, MultivaluedMap<String, String> headers) {
+        String cacheControl = headers.getFirst(HttpHeaders.CACHE_CONTROL);
+        if ((cacheControl != null && cacheControl.toLowerCase().contains(NO_STORE))
+                || headers.getFirst(HttpHeaders.VARY) != null) {
+            remove(key);
+            return;
+        }
+        String etag = headers.getFirst(HttpHeaders.ETAG);
+        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        long freshUntil = freshUntil(cacheControl, headers.getFirst(HttpHeaders.EXPIRES));
+        if (etag == null && lastModified == null && freshUntil <= System.currentTimeMillis()) {
+            remove(key);
+            return;
+        }
+        long entryWeight = Math.max(1, body.length);
+        if (entryWeight > this.maxWeight) {
+            remove(key);
+            return;
+        }
+        Entry entry = new Entry(body, headers, etag, lastModified, freshUntil, entryWeight);
+        synchronized (this.entries) {
+            Entry old = this.entries.put(key, entry);
+            if (old != null) {
+                this.weight -= old.weight;
+            }
+            this.weight += entryWeight;
+            for (Iterator<Entry> itr = this.entries.values().iterator(); this.weight > this.maxWeight && itr.hasNext();) {
+                Entry eldest = itr.next();
+                itr.remove();
+                this.weight -= eldest.weight;
+                this.evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Updates the freshness of a cached response after the service returned
+     * 304 (Not Modified).
+     *
+     * @param key identifies the call.
+     * @param entry the cached response.
+     * @param headers the headers of the 304 response.
+     */
+    void refresh(Object key, Entry entry, MultivaluedMap<String, String> headers) {
+        String cacheControl = headers.getFirst(HttpHeaders.CACHE_CONTROL);
+        long freshUntil = freshUntil(cacheControl, headers.getFirst(HttpHeaders.EXPIRES));
+        Entry refreshed = new Entry(entry.body, entry.headers,
+                entry.etag, entry.lastModified, freshUntil, entry.weight);
+        synchronized (this.entries) {
+            if (this.entries.get(key) == entry) {
+                this.entries.put(key, refreshed);
+            }
+        }
+    }
+
+    private void remove(Object key) {
+        synchronized (this.entries) {
+            Entry old = this.entries.remove(key);
+            if (old != null) {
+                this.weight -= old.weight;
+            }
+        }
+    }
+
+    /**
+     * Computes until when a response may be used without revalidation.
+     *
+     * @param cacheControl the value of the Cache-Control header, if any.
+     * @param expires the value of the Expires header, if any.
+     * @return the time in milliseconds. A time in the past means that the
+     * response must be revalidated before every use.
+     */
+    private static long freshUntil(String cacheControl, String expires) {
+        long now = System.currentTimeMillis();
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase().split(",")) {
+                directive = directive.trim();
+                if (directive.equals(NO_CACHE)) {
+                    return 0;
+                } else if (directive.startsWith(MAX_AGE)) {
+                    try {
+                        return now + 1000 * Long.parseLong(directive.substring(MAX_AGE.length()).trim());
+                    } catch (NumberFormatException ex) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        if (expires != null) {
+            try {
+                return ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ex) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A cached response.
+     */
+    static final class Entry {
+
+        private final byte[] body;
+        private final MultivaluedMap<String, String> headers;
+        private final String etag;
+        private final String lastModified;
+        private final long freshUntil;
+        private final long weight;
+
+        Entry(byte[] inBody, MultivaluedMap<String, String> inHeaders, String inEtag, String inLastModified, long inFreshUntil, long inWeight) {
+            this.body = inBody;
+            this.headers = inHeaders;
+            this.etag = inEtag;
+            this.lastModified = inLastModified;
+            this.freshUntil = inFreshUntil;
+            this.weight = inWeight;
+        }
+
+        /**
+         * Gets the response body.
+         *
+         * @return the body. Must not be modified.
+         */
+        byte[] getBody() {
+            return this.body;
+        }
+
+        /**
+         * Gets the headers of the response that was cached.
+         *
+         * @return the headers. Must not be modified.
+         */
+        MultivaluedMap<String, String> getHeaders() {
+            return this.headers;
+        }
+
+        boolean isFresh() {
+            return this.freshUntil > System.currentTimeMillis();
+        }
+
+        /**
+         * Adds conditional request headers for revalidating this response.
+         *
+         * @param headers the request headers. Cannot be <code>null</code>.
+         */
+        void addConditionalHeaders(MultivaluedMap<String, String> headers) {
+            if (this.etag != null) {
+                headers.putSingle(HttpHeaders.IF_NONE_MATCH, this.etag);
+            }
+            if (this.lastModified != null) {
+                headers.putSingle(HttpHeaders.IF_MODIFIED_SINCE, this.lastModified);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A snapshot of the counters of a {@link ResponseCache}.
+ *
+ * @author Andrew Post
+ */
+public final class ResponseCacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long revalidations;
+    private final long evictions;
+    private final int entries;
+    private final long weight;
+
+    ResponseCacheStats(long inHits, long inMisses, long inRevalidations, long inEvictions, int inEntries, long inWeight) {
+        this.hits = inHits;
+        this.misses = inMisses;
+        this.revalidations = inRevalidations;
+        this.evictions = inEvictions;
+        this.entries = inEntries;
+        this.weight = inWeight;
+    }
+
+    /**
+     * Gets the number of GETs that were answered from the cache without
+     * calling the service.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of GETs for which the service returned a new response.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of conditional GETs for which the service returned 304
+     * (Not Modified), so that the cached response was reused.
+     *
+     * @return the number of successful revalidations.
+     */
+    public long getRevalidations() {
+        return revalidations;
+    }
+
+    /**
+     * Gets the number of responses that were evicted to keep the cache
+     * within its maximum weight.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of responses in the cache.
+     *
+     * @return the number of entries.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the total size of the response bodies in the cache.
+     *
+     * @return the weight in bytes.
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCacheStats{" + "hits=" + hits + ", misses=" + misses + ", revalidations=" + revalidations + ", evictions=" + evictions + ", entries=" + entries + ", weight=" + weight + '}';
+    }
+
+}
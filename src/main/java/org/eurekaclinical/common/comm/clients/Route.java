@@ -32,22 +32,98 @@ public class Route {
     private final String replacementPathPrefix;
     private final String matchingPathPrefix;
     private final Pattern pattern;
+    private final long timeout;
+    private final ConcurrencyLimiter concurrencyLimiter;
 
     public Route(String inMatchingPathPrefix, String inReplacementPathPrefix, EurekaClinicalClient inClient) {
+        this(inMatchingPathPrefix, inReplacementPathPrefix, inClient, 0);
+    }
+
+    /**
+     * Creates a route with a timeout for proxied calls.
+     *
+     * @param inMatchingPathPrefix the prefix of the paths to match.
+     * @param inReplacementPathPrefix what to replace the prefix with.
+     * @param inClient the client for calling the backend service.
+     * @param inTimeout how long, in milliseconds, to wait for the backend
+     * service to respond before the proxy answers with 504 (Gateway Timeout).
+     * Only honored by the proxy servlet's async mode. Zero or less means the
+     * servlet's default.
+     */
+    public Route(String inMatchingPathPrefix, String inReplacementPathPrefix, EurekaClinicalClient inClient, long inTimeout) {
+        this(inMatchingPathPrefix, inReplacementPathPrefix, inClient, inTimeout, null);
+    }
+
+    /**
+     * Creates a route with a timeout and a limit on concurrent proxied calls.
+     *
+     * @param inMatchingPathPrefix the prefix of the paths to match.
+     * @param inReplacementPathPrefix what to replace the prefix with.
+     * @param inClient the client for calling the backend service.
+     * @param inTimeout how long, in milliseconds, to wait for the backend
+     * service to respond in the proxy servlet's async mode. Zero or less
+     * means the servlet's default.
+     * @param inConcurrencyLimiter the limit on concurrent calls, such as a
+     * {@link Bulkhead} or an {@link AdaptiveConcurrencyLimiter}, or
+     * <code>null</code> for no limit. May be shared by several routes.
+     */
+    public Route(String inMatchingPathPrefix, String inReplacementPathPrefix, EurekaClinicalClient inClient, long inTimeout, ConcurrencyLimiter inConcurrencyLimiter) {
         this.matchingPathPrefix = inMatchingPathPrefix;
         this.replacementPathPrefix = inReplacementPathPrefix;
         this.client = inClient;
         this.pattern = Pattern.compile("^" + this.matchingPathPrefix);
+        this.timeout = inTimeout;
+        this.concurrencyLimiter = inConcurrencyLimiter;
     }
 
     public EurekaClinicalClient getClient() {
         return client;
     }
 
+    public String getMatchingPathPrefix() {
+        return matchingPathPrefix;
+    }
+
     public String getReplacementPathPrefix() {
         return replacementPathPrefix;
     }
 
+    /**
+     * Gets the limit on concurrent proxied calls.
+     *
+     * @return the limiter, or <code>null</code> if there is no limit.
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Gets the timeout for proxied calls.
+     *
+     * @return the timeout in milliseconds, or zero or less for the proxy
+     * servlet's default.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Replaces the matching path prefix with the replacement path prefix by
+     * plain string comparison. Only valid for routes whose matching path
+     * prefix has no regular expression metacharacters.
+     *
+     * @param path the path.
+     * @return the replaced path, or <code>null</code> if the path does not
+     * start with the matching path prefix.
+     */
+    String replaceLiteral(String path) {
+        if (path.startsWith(this.matchingPathPrefix)) {
+            return this.replacementPathPrefix + path.substring(this.matchingPathPrefix.length());
+        } else {
+            return null;
+        }
+    }
+
     public String replace(String path) {
         Matcher matcher = this.pattern.matcher(path);
         StringBuffer sb = new StringBuffer();
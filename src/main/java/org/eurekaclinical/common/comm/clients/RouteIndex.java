@@ -0,0 +1,294 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the route for a path by longest-prefix match on path segments. The
+ * index is built once from a routing table and is immutable afterwards, so
+ * it may be shared by any number of threads.
+ *
+ * A route matches a path if the path starts with the route's matching path
+ * prefix and the prefix ends at a segment boundary, so that
+ * <code>/users</code> matches <code>/users</code> and
+ * <code>/users/5</code> but not <code>/usersettings</code>. If several
+ * routes match, the one with the most segments wins, and among routes with
+ * the same segments the one listed first. Lookups do not allocate unless a
+ * route matches.
+ *
+ * Routes whose matching path prefix contains regular expression
+ * metacharacters cannot be put in the trie. They are tried in table order
+ * with {@link Route#replace(java.lang.String) } after the trie finds no
+ * match.
+ *
+ * @author Andrew Post
+ */
+final class RouteIndex {
+
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Node root;
+    private final Route[] regexRoutes;
+    private final Map<EurekaClinicalClient, ReversePrefix[]> reversePrefixes;
+    private final Set<EurekaClinicalClient> clients;
+
+    /**
+     * Builds the index.
+     *
+     * @param inRoutes the routes in table order.
+     */
+    RouteIndex(Route[] inRoutes) {
+        this.reversePrefixes = new HashMap<>();
+        this.clients = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.root = new Node(null);
+        List<Route> regex = new ArrayList<>();
+        for (Route route : inRoutes) {
+            this.clients.add(route.getClient());
+            String prefix = route.getMatchingPathPrefix();
+            if (isRegex(prefix)) {
+                regex.add(route);
+            } else {
+                addReversePrefixes(route);
+                Node node = this.root;
+                int i = 0;
+                int n = prefix.length();
+                while (true) {
+                    while (i < n && prefix.charAt(i) == '/') {
+                        i++;
+                    }
+                    if (i >= n) {
+                        break;
+                    }
+                    int end = prefix.indexOf('/', i);
+                    if (end < 0) {
+                        end = n;
+                    }
+                    node = node.getOrAddChild(prefix.substring(i, end));
+                    i = end;
+                }
+                node.addRoute(route);
+            }
+        }
+        this.regexRoutes = regex.toArray(new Route[regex.size()]);
+    }
+
+    /**
+     * Gets the clients of the indexed routes.
+     *
+     * @return the clients, compared by identity. Cannot be modified.
+     */
+    Set<EurekaClinicalClient> getClients() {
+        return Collections.unmodifiableSet(this.clients);
+    }
+
+    /**
+     * Finds the route for a path.
+     *
+     * @param path the path. Cannot be <code>null</code>.
+     * @return the route and the replaced path, or <code>null</code> if no
+     * route matches.
+     */
+    ReplacementPathAndClient lookup(String path) {
+        Route best = this.root.match(path);
+        Node node = this.root;
+        int i = 0;
+        int n = path.length();
+        while (true) {
+            while (i < n && path.charAt(i) == '/') {
+                i++;
+            }
+            if (i >= n) {
+                break;
+            }
+            int end = path.indexOf('/', i);
+            if (end < 0) {
+                end = n;
+            }
+            node = node.child(path, i, end);
+            if (node == null) {
+                break;
+            }
+            Route route = node.match(path);
+            if (route != null) {
+                best = route;
+            }
+            i = end;
+        }
+        if (best != null) {
+            return new ReplacementPathAndClient(best.replaceLiteral(path), best, this.reversePrefixes.get(best.getClient()));
+        }
+        for (Route route : this.regexRoutes) {
+            String replacementPath = route.replace(path);
+            if (replacementPath != null) {
+                return new ReplacementPathAndClient(replacementPath, route, this.reversePrefixes.get(route.getClient()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the prefixes that a backend URL of the given route starts with, in
+     * both absolute and path-only form, to the client's reverse mappings,
+     * keeping each client's mappings ordered from longest to shortest.
+     */
+    private void addReversePrefixes(Route route) {
+        EurekaClinicalClient client = route.getClient();
+        ReversePrefix[] existing = this.reversePrefixes.get(client);
+        List<ReversePrefix> prefixes = existing != null ? new ArrayList<>(Arrays.asList(existing)) : new ArrayList<>();
+        prefixes.addAll(Arrays.asList(reversePrefixes(client.getResourceUrl(),
+                route.getReplacementPathPrefix(), route.getMatchingPathPrefix())));
+        prefixes.sort((a, b) -> b.backendPrefix.length() - a.backendPrefix.length());
+        this.reversePrefixes.put(client, prefixes.toArray(new ReversePrefix[prefixes.size()]));
+    }
+
+    /**
+     * Creates the absolute and path-only reverse mappings of a route. Both
+     * the backend prefix and the proxy path prefix are stored without a
+     * trailing slash, so that routes with and without one revert the same
+     * URLs.
+     *
+     * @param resourceUrl the base URL of the route's client.
+     * @param replacementPathPrefix the route's replacement path prefix.
+     * @param matchingPathPrefix the route's matching path prefix.
+     * @return the two mappings.
+     */
+    static ReversePrefix[] reversePrefixes(URI resourceUrl, String replacementPathPrefix, String matchingPathPrefix) {
+        String base = stripTrailingSlash(resourceUrl.toString());
+        String basePath = stripTrailingSlash(resourceUrl.getRawPath() != null ? resourceUrl.getRawPath() : "");
+        String replacement = stripTrailingSlash(replacementPathPrefix);
+        if (!replacement.isEmpty() && !replacement.startsWith("/")) {
+            replacement = "/" + replacement;
+        }
+        String proxyPathPrefix = stripTrailingSlash(matchingPathPrefix);
+        return new ReversePrefix[]{
+            new ReversePrefix(base + replacement, proxyPathPrefix),
+            new ReversePrefix(basePath + replacement, proxyPathPrefix)
+        };
+    }
+
+    private static String stripTrailingSlash(String str) {
+        return str.endsWith("/") ? str.substring(0, str.length() - 1) : str;
+    }
+
+    private static boolean isRegex(String prefix) {
+        for (int i = 0, n = prefix.length(); i < n; i++) {
+            if (REGEX_METACHARACTERS.indexOf(prefix.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Node {
+
+        private final String segment;
+        private Node[] children = new Node[0];
+        private Route[] routes = new Route[0];
+
+        Node(String inSegment) {
+            this.segment = inSegment;
+        }
+
+        Node getOrAddChild(String inSegment) {
+            for (Node child : this.children) {
+                if (child.segment.equals(inSegment)) {
+                    return child;
+                }
+            }
+            Node child = new Node(inSegment);
+            this.children = Arrays.copyOf(this.children, this.children.length + 1);
+            this.children[this.children.length - 1] = child;
+            return child;
+        }
+
+        void addRoute(Route route) {
+            this.routes = Arrays.copyOf(this.routes, this.routes.length + 1);
+            this.routes[this.routes.length - 1] = route;
+        }
+
+        Node child(String path, int start, int end) {
+            int length = end - start;
+            for (Node child : this.children) {
+                if (child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the first of this node's routes whose matching path prefix the
+         * path starts with. Routes that end with a slash only match paths
+         * that continue past it.
+         */
+        Route match(String path) {
+            for (Route route : this.routes) {
+                if (path.startsWith(route.getMatchingPathPrefix())) {
+                    return route;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Maps backend URLs that start with a prefix back to the proxy path
+     * prefix of the route that produced them.
+     */
+    static final class ReversePrefix {
+
+        private final String backendPrefix;
+        private final String proxyPathPrefix;
+
+        ReversePrefix(String inBackendPrefix, String inProxyPathPrefix) {
+            this.backendPrefix = inBackendPrefix;
+            this.proxyPathPrefix = inProxyPathPrefix;
+        }
+
+        /**
+         * Reverts a backend URL or path.
+         *
+         * @param location the backend URL or path.
+         * @param proxyBaseUrl the URL of the proxy servlet.
+         * @return the proxy URL, or <code>null</code> if the location does
+         * not start with this prefix.
+         */
+        String revert(String location, String proxyBaseUrl) {
+            if (location.startsWith(this.backendPrefix)) {
+                String rest = location.substring(this.backendPrefix.length());
+                if (rest.isEmpty() || rest.charAt(0) == '/' || rest.charAt(0) == '?' || rest.charAt(0) == '#') {
+                    return proxyBaseUrl + this.proxyPathPrefix + rest;
+                }
+            }
+            return null;
+        }
+    }
+
+}
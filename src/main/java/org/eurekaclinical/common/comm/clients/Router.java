@@ -20,44 +20,148 @@ package org.eurekaclinical.common.comm.clients;
  * #L%
  */
 import com.google.inject.servlet.SessionScoped;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Maps proxied paths to backend services. The routes are published as an
+ * immutable {@link RouteIndex} behind an atomic reference, so lookups never
+ * block. When the {@link RouterReloader} starts a new generation, the next
+ * lookup schedules a reload of the routing table in the background and
+ * keeps using the current routes until the new ones are swapped in. When
+ * a reload removes the last route to a client, the client is closed after
+ * its in-flight calls finish, but only if the routing table owns it (see
+ * {@link RouterTable#ownsClient(EurekaClinicalClient) }). Other clients are
+ * left open for the code that created them to close.
  *
  * @author Andrew Post
  */
 @SessionScoped
 public class Router {
 
-    private final Route[] routes;
-    private Map<EurekaClinicalClient, Pattern> patterns;
+    private static final Logger LOGGER = LoggerFactory.getLogger(Router.class);
+
+    private final RouterTable routerTable;
+    private final RouterReloader reloader;
+    private final AtomicReference<RouteIndex> routeIndex;
+    private final AtomicBoolean reloadScheduled;
+    private final boolean shared;
+    private volatile long generation;
 
-    @Inject
     public Router(RouterTable routesParser) throws RouterTableLoadException {
-        this.routes = routesParser.load();
-        this.patterns = new HashMap<>();
-        for (Route route : this.routes) {
-            EurekaClinicalClient client = route.getClient();
-            if (this.patterns.containsKey(client)) {
-                this.patterns.put(client, Pattern.compile(client.getResourceUrl().toString()));
-            }
-        }
+        this(routesParser, null);
+    }
+
+    /**
+     * Creates a router that reloads its routing table when the given reloader
+     * requests it.
+     *
+     * @param routesParser the routing table. Its <code>load</code> method
+     * may be called again later on a background thread.
+     * @param inReloader the reloader, or <code>null</code> if the routes
+     * should only be reloaded by calling {@link #reload() }.
+     * @throws RouterTableLoadException if the routing table could not be
+     * loaded.
+     */
+    @Inject
+    public Router(RouterTable routesParser, RouterReloader inReloader) throws RouterTableLoadException {
+        this(routesParser, inReloader, false);
+    }
+
+    /**
+     * Creates a router that reloads its routing table when the given reloader
+     * requests it, and that is optionally shared by all users of the
+     * application. A shared router rejects routing tables that have a client
+     * with cookies enabled, because such a client would keep one user's
+     * backend session and send it with other users' calls.
+     *
+     * @param routesParser the routing table. Its <code>load</code> method
+     * may be called again later on a background thread.
+     * @param inReloader the reloader, or <code>null</code> if the routes
+     * should only be reloaded by calling {@link #reload() }.
+     * @param inShared whether the router serves all users instead of one
+     * user session.
+     * @throws RouterTableLoadException if the routing table could not be
+     * loaded, or if the router is shared and a route's client has cookies
+     * enabled.
+     */
+    public Router(RouterTable routesParser, RouterReloader inReloader, boolean inShared) throws RouterTableLoadException {
+        this.routerTable = routesParser;
+        this.reloader = inReloader;
+        this.shared = inShared;
+        this.reloadScheduled = new AtomicBoolean();
+        this.generation = inReloader != null ? inReloader.getGeneration() : 0;
+        this.routeIndex = new AtomicReference<>(buildIndex(routesParser.load()));
     }
 
+    /**
+     * Finds the route for a path by longest-prefix match (see
+     * {@link RouteIndex}).
+     *
+     * @param path the path. Cannot be <code>null</code>.
+     * @return the replacement path and client, or <code>null</code> if no
+     * route matches.
+     */
     public ReplacementPathAndClient getReplacementPathAndClient(String path) {
         if (path == null) {
             throw new IllegalArgumentException("path cannot be null");
         }
-        for (Route route : this.routes) {
-            String replacementPath = route.replace(path);
-            EurekaClinicalClient client = route.getClient();
-            if (replacementPath != null) {
-                return new ReplacementPathAndClient(replacementPath, client, this.patterns.get(client));
+        if (this.reloader != null && this.reloader.getGeneration() != this.generation
+                && this.reloadScheduled.compareAndSet(false, true)) {
+            RouterReloader.runInBackground(() -> {
+                try {
+                    reload();
+                } catch (RouterTableLoadException ex) {
+                    LOGGER.error("Could not reload the routing table; keeping the current routes", ex);
+                } finally {
+                    this.reloadScheduled.set(false);
+                }
+            });
+        }
+        return this.routeIndex.get().lookup(path);
+    }
+
+    /**
+     * Loads the routing table again and swaps in the new routes. Calls that
+     * are in flight finish with the routes they were started with. Clients
+     * that the routing table owns and that are no longer in any route are
+     * closed in the background once their in-flight calls have finished.
+     * If loading fails, or if the router is shared and a route's client has
+     * cookies enabled, the current routes are kept and the reload is tried
+     * again on the next lookup.
+     *
+     * @throws RouterTableLoadException if the routing table could not be
+     * loaded, or if the router is shared and a route's client has cookies
+     * enabled.
+     */
+    public synchronized void reload() throws RouterTableLoadException {
+        long newGeneration = this.reloader != null ? this.reloader.getGeneration() : 0;
+        RouteIndex newIndex = buildIndex(this.routerTable.load());
+        RouteIndex oldIndex = this.routeIndex.getAndSet(newIndex);
+        this.generation = newGeneration;
+        for (EurekaClinicalClient client : oldIndex.getClients()) {
+            if (!newIndex.getClients().contains(client) && this.routerTable.ownsClient(client)) {
+                RouterReloader.runInBackground(() -> {
+                    LOGGER.info("Closing client {} of a removed route", client.getClass().getName());
+                    client.close();
+                });
+            }
+        }
+    }
+
+    private RouteIndex buildIndex(Route[] routes) throws RouterTableLoadException {
+        if (this.shared) {
+            for (Route route : routes) {
+                if (route.getClient().isCookiesEnabled()) {
+                    throw new RouterTableLoadException("The client of route "
+                            + route.getMatchingPathPrefix()
+                            + " has cookies enabled, which a router shared by all users does not allow");
+                }
             }
         }
-        return null;
+        return new RouteIndex(routes);
     }
 }
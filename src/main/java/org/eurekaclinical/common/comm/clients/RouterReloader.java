@@ -0,0 +1,185 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tells {@link Router}s when to reload their routing tables. Each call to
+ * {@link #reload() } starts a new generation. Routers notice the new
+ * generation on their next lookup, and then reload in the background while
+ * they continue to serve requests with their current routes.
+ *
+ * Reloads may be requested by calling {@link #reload() } from application
+ * code, through JMX after {@link #registerMBean(java.lang.String) }, or
+ * automatically when a file changes after
+ * {@link #watch(java.nio.file.Path) }.
+ *
+ * @author Andrew Post
+ */
+@Singleton
+public class RouterReloader implements RouterReloaderMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouterReloader.class);
+
+    private static final ExecutorService BACKGROUND;
+
+    static {
+        AtomicInteger threadNumber = new AtomicInteger();
+        BACKGROUND = Executors.newCachedThreadPool((Runnable r) -> {
+            Thread thread = new Thread(r, "RouterReloader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final AtomicLong generation = new AtomicLong();
+    private final Set<Path> watchedFiles = ConcurrentHashMap.newKeySet();
+    private WatchService watchService;
+    private ObjectName objectName;
+
+    @Override
+    public void reload() {
+        LOGGER.info("Routing table reload requested (generation {})", this.generation.incrementAndGet());
+    }
+
+    @Override
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Requests a reload whenever the given file is created or modified.
+     *
+     * @param file the file, typically the one from which the
+     * {@link RouterTable} reads its routes. Cannot be <code>null</code>.
+     * @throws IOException if the file's directory could not be watched.
+     */
+    public synchronized void watch(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        if (this.watchService == null) {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            WatchService ws = this.watchService;
+            runInBackground(() -> watchLoop(ws));
+        }
+        absolute.getParent().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watchedFiles.add(absolute);
+    }
+
+    /**
+     * Takes events from the watch service until it is closed, and requests
+     * one reload for each batch of events that touches any watched file.
+     * There is a single loop per watch service, so that no file's events
+     * are consumed by a loop that is not looking for them.
+     *
+     * @param ws the watch service.
+     */
+    private void watchLoop(WatchService ws) {
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                Path dir = (Path) key.watchable();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (context instanceof Path && this.watchedFiles.contains(dir.resolve((Path) context))) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            LOGGER.debug("Stopped watching {}", this.watchedFiles);
+        }
+    }
+
+    /**
+     * Registers this reloader with the platform MBean server.
+     *
+     * @param name the object name, for example,
+     * <code>org.eurekaclinical.common:type=RouterReloader,name=myapp</code>.
+     * @throws JMException if registration failed.
+     */
+    public synchronized void registerMBean(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName on = new ObjectName(name);
+        server.registerMBean(this, on);
+        this.objectName = on;
+    }
+
+    /**
+     * Stops watching files and unregisters the MBean, if any.
+     */
+    public synchronized void close() {
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Error closing watch service", ex);
+            }
+            this.watchService = null;
+            this.watchedFiles.clear();
+        }
+        if (this.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            } catch (JMException ex) {
+                LOGGER.warn("Error unregistering " + this.objectName, ex);
+            }
+            this.objectName = null;
+        }
+    }
+
+    /**
+     * Runs a task on the pool of daemon threads used for reloads.
+     *
+     * @param task the task.
+     */
+    static void runInBackground(Runnable task) {
+        BACKGROUND.execute(task);
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Management interface of the {@link RouterReloader}.
+ *
+ * @author Andrew Post
+ */
+public interface RouterReloaderMXBean {
+
+    /**
+     * Requests that all routers reload their routing tables.
+     */
+    void reload();
+
+    /**
+     * Gets the number of reloads that have been requested.
+     *
+     * @return the generation of the routing table.
+     */
+    long getGeneration();
+}
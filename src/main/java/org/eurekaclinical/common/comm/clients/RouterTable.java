@@ -36,4 +36,21 @@ package org.eurekaclinical.common.comm.clients;
  */
 public interface RouterTable {
     Route[] load() throws RouterTableLoadException;
+
+    /**
+     * Returns whether this routing table owns the given client, that is,
+     * whether it created the client for its routes and no other code calls
+     * it. When a reload removes the last route to a client that the table
+     * owns, the {@link Router} closes the client after its in-flight calls
+     * finish. Clients that the table does not own are left open. The
+     * default implementation owns no clients, which is right for tables
+     * whose clients are injected singletons.
+     *
+     * @param client a client of one of this table's routes.
+     * @return <code>true</code> if the client may be closed once no route
+     * refers to it, <code>false</code> otherwise.
+     */
+    default boolean ownsClient(EurekaClinicalClient client) {
+        return false;
+    }
 }
@@ -0,0 +1,113 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A reference-counted, process-wide connection pool for one target host. All
+ * {@link EurekaClinicalClient}s that are configured with
+ * {@link ConnectionPoolConfig#setShared(boolean) } and that call the same
+ * scheme, host and port use the same pool, while keeping their own cookies
+ * and CAS state. The pool is shut down when the last client that uses it is
+ * closed.
+ *
+ * @author Andrew Post
+ */
+final class SharedConnectionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedConnectionPool.class);
+
+    /**
+     * Guarded by itself.
+     */
+    private static final Map<String, SharedConnectionPool> POOLS = new HashMap<>();
+
+    private final String key;
+    private final InstrumentedClientConnManager connManager;
+    private final ScheduledFuture<?> idleConnectionEviction;
+    private int references;
+
+    private SharedConnectionPool(String inKey, ConnectionPoolConfig inConfig) {
+        this.key = inKey;
+        this.connManager = new InstrumentedClientConnManager(inConfig, true);
+        this.idleConnectionEviction = IdleConnectionEvictor.schedule(this.connManager, inConfig);
+    }
+
+    /**
+     * Gets the pool for the host of the given URL, creating it with the given
+     * settings if no client is currently using a pool for that host. Every
+     * call must be paired with a call to {@link #release() }.
+     *
+     * @param url the URL of the service that will be called. Cannot be
+     * <code>null</code>.
+     * @param config the settings to use if the pool must be created. Cannot
+     * be <code>null</code>.
+     * @return the pool. Guaranteed not <code>null</code>.
+     */
+    static SharedConnectionPool acquire(URI url, ConnectionPoolConfig config) {
+        String key = keyFor(url);
+        synchronized (POOLS) {
+            SharedConnectionPool pool = POOLS.get(key);
+            if (pool == null) {
+                LOGGER.debug("Creating shared connection pool for {}", key);
+                pool = new SharedConnectionPool(key, config);
+                POOLS.put(key, pool);
+            }
+            pool.references++;
+            return pool;
+        }
+    }
+
+    InstrumentedClientConnManager getConnManager() {
+        return this.connManager;
+    }
+
+    /**
+     * Releases a reference to this pool. The pool is shut down when its last
+     * reference is released.
+     */
+    void release() {
+        synchronized (POOLS) {
+            if (--this.references == 0) {
+                LOGGER.debug("Shutting down shared connection pool for {}", this.key);
+                POOLS.remove(this.key);
+                this.idleConnectionEviction.cancel(false);
+                this.connManager.shutdownShared();
+            }
+        }
+    }
+
+    private static String keyFor(URI url) {
+        String scheme = url.getScheme();
+        int port = url.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(scheme) ? 443 : 80;
+        }
+        return scheme.toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+
+}
@@ -30,4 +30,17 @@ interface WebResourceWrapperFactory {
 
     WebResourceWrapper getInstance(ApacheHttpClient4 client, URI resourceUrl);
 
+    /**
+     * Discards anything remembered about the client's session with the
+     * service, for example, after the service has rejected a call.
+     */
+    void invalidate();
+
+    /**
+     * Tells the factory that the call for which the current thread last got
+     * a wrapper is done, whether or not the wrapper was used. Clients call
+     * this in a <code>finally</code> block after every call.
+     */
+    void release();
+
 }
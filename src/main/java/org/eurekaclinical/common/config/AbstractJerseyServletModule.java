@@ -158,9 +158,22 @@ public abstract class AbstractJerseyServletModule extends JerseyServletModule {
     }
 
     protected void setupJwtFilter () {
+        filter(PROTECTED_API_PATH).through(JwtFilter.class, getJwtFilterInitParams());
+    }
+
+    /**
+     * Returns the init parameters of the JWT filter. The default
+     * implementation sets only the shared secret. Override to add, for
+     * example, {@link JwtFilter#ISSUER_PARAM_NAME},
+     * {@link JwtFilter#LEEWAY_PARAM_NAME} or
+     * {@link JwtFilter#JWKS_FILE_PARAM_NAME}.
+     *
+     * @return a mutable map of init parameters.
+     */
+    protected Map<String, String> getJwtFilterInitParams() {
         Map<String, String> params = new HashMap<>();
         params.put(JwtFilter.SECRET_PARAM_NAME, this.properties.getJwtSecret());
-        filter(PROTECTED_API_PATH).through(JwtFilter.class, params);
+        return params;
     }
 
     @Override
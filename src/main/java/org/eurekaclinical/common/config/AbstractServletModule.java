@@ -30,6 +30,7 @@ import com.google.inject.servlet.ServletModule;
 import java.util.HashMap;
 import org.eurekaclinical.common.filter.HasAuthenticatedSessionFilter;
 import org.eurekaclinical.common.filter.InvalidateSessionFilter;
+import org.eurekaclinical.common.servlet.BatchProxyServlet;
 import org.eurekaclinical.common.servlet.DestroySessionServlet;
 import org.eurekaclinical.common.servlet.LoginServlet;
 import org.eurekaclinical.common.servlet.LogoutServlet;
@@ -134,7 +135,56 @@ public abstract class AbstractServletModule extends ServletModule {
     protected void serveProxyResource() {
         serve("/proxy-resource/*").with(ProxyServlet.class);
     }
+
+    /**
+     * Serves <code>/proxy-resource/*</code>, optionally in async mode (see
+     * {@link ProxyServlet#init() }).
+     *
+     * @param async <code>true</code> to release container threads while
+     * waiting on backend services.
+     */
+    protected void serveProxyResource(boolean async) {
+        serveProxyResource(async, false);
+    }
+
+    /**
+     * Serves <code>/proxy-resource/*</code>, optionally in async mode (see
+     * {@link ProxyServlet#init() }) and in stateless mode (see
+     * {@link ProxyServlet#STATELESS_PARAM}).
+     *
+     * @param async <code>true</code> to release container threads while
+     * waiting on backend services.
+     * @param stateless <code>true</code> to share one proxying client among
+     * all users instead of creating one per session.
+     */
+    protected void serveProxyResource(boolean async, boolean stateless) {
+        Map<String, String> params = new HashMap<>();
+        params.put(ProxyServlet.ASYNC_PARAM, Boolean.toString(async));
+        params.put(ProxyServlet.STATELESS_PARAM, Boolean.toString(stateless));
+        serve("/proxy-resource/*").with(ProxyServlet.class, params);
+    }
     
+    /**
+     * Serves <code>/proxy-batch</code>, which proxies a JSON array of calls
+     * in one exchange (see {@link BatchProxyServlet}).
+     */
+    protected void serveBatchProxyResource() {
+        serveBatchProxyResource(false);
+    }
+
+    /**
+     * Serves <code>/proxy-batch</code>, optionally in stateless mode (see
+     * {@link BatchProxyServlet#STATELESS_PARAM}).
+     *
+     * @param stateless <code>true</code> to share one proxying client among
+     * all users instead of using the one of each session.
+     */
+    protected void serveBatchProxyResource(boolean stateless) {
+        Map<String, String> params = new HashMap<>();
+        params.put(BatchProxyServlet.STATELESS_PARAM, Boolean.toString(stateless));
+        serve("/proxy-batch").with(BatchProxyServlet.class, params);
+    }
+
     /**
      * Serves <code>/destroy-session</code>.
      */
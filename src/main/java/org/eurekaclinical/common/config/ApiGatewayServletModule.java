@@ -29,14 +29,30 @@ import org.eurekaclinical.standardapis.props.CasEurekaClinicalProperties;
  */
 public class ApiGatewayServletModule extends AbstractServletModule {
 
+    private final boolean asyncProxy;
+
     public ApiGatewayServletModule(CasEurekaClinicalProperties inProperties) {
+        this(inProperties, false);
+    }
+
+    /**
+     * Creates the module.
+     *
+     * @param inProperties the application properties.
+     * @param inAsyncProxy <code>true</code> to serve
+     * <code>/proxy-resource/*</code> in async mode, which requires the Guice
+     * filter to be declared as async-supported in <code>web.xml</code>.
+     */
+    public ApiGatewayServletModule(CasEurekaClinicalProperties inProperties, boolean inAsyncProxy) {
         super(inProperties);
+        this.asyncProxy = inAsyncProxy;
     }
 
     /**
      * Makes the following calls available: 
      * <ul>
      * <li><code>/proxy-resource/*</code>
+     * <li><code>/proxy-batch</code>
      * <li><code>/protected/login</code>
      * <li><code>/protected/get-session</code>
      * <li><code>/destroy-session</code>
@@ -45,7 +61,8 @@ public class ApiGatewayServletModule extends AbstractServletModule {
      */
     @Override
     protected void setupServlets() {
-        serveProxyResource();
+        serveProxyResource(this.asyncProxy);
+        serveBatchProxyResource();
         serveLogin();
         serveGetSession();
         serveDestroySession();
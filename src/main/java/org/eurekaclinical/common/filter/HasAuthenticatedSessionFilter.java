@@ -52,8 +52,9 @@ public class HasAuthenticatedSessionFilter implements Filter {
 
     /**
      * Sets the request attribute and passes the request and response onto the
-     * next filter. If there is no session or the remote user is not set,
-     * the response status is set to 400 (Bad Request).
+     * next filter. If the remote user is not set, or there is no session
+     * and the request was not authenticated with a bearer token by
+     * {@link JwtFilter}, the response status is set to 400 (Bad Request).
      * 
      * @param inRequest the HTTP request.
      * @param inResponse the HTTP response.
@@ -70,7 +71,8 @@ public class HasAuthenticatedSessionFilter implements Filter {
 
         String remoteUser = servletRequest.getRemoteUser();
         HttpSession session = servletRequest.getSession(false);
-        if (remoteUser != null && session != null) {
+        if (remoteUser != null && (session != null
+                || Boolean.TRUE.equals(servletRequest.getAttribute(JwtFilter.TOKEN_AUTHENTICATED_ATTRIBUTE)))) {
             inRequest.setAttribute("userIsActivated", Boolean.TRUE);
             inFilterChain.doFilter(inRequest, inResponse);
         } else {
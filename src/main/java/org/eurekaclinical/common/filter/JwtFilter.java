@@ -22,12 +22,17 @@ package org.eurekaclinical.common.filter;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
-import org.eurekaclinical.common.util.JwtUtil;
+import org.eurekaclinical.common.filter.VerifiedTokenCache.VerifiedToken;
+import org.eurekaclinical.common.util.HmacJwtVerifier;
+import org.eurekaclinical.common.util.JwksJwtVerifier;
+import org.eurekaclinical.common.util.JwtVerifier;
 import org.eurekaclinical.standardapis.filter.RolesRequestWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -38,6 +43,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 import java.security.Principal;
 
 /**
@@ -54,11 +61,121 @@ public class JwtFilter implements Filter {
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtFilter.class);
     private static final String AUTH_TYPE = "BEARER";
     public static final String SECRET_PARAM_NAME = "JWT_SECRET";
-    private String secret;
+
+    /**
+     * Optional init parameter with the required value of the token's
+     * <code>iss</code> claim. If unset, any issuer is accepted.
+     */
+    public static final String ISSUER_PARAM_NAME = "JWT_ISSUER";
+
+    /**
+     * Optional init parameter with the allowed clock skew, in seconds, when
+     * checking a token's time-based claims. The default is 0.
+     */
+    public static final String LEEWAY_PARAM_NAME = "JWT_LEEWAY";
+
+    /**
+     * Optional init parameter with the path of a JSON Web Key Set file. If
+     * set, tokens are verified with the RSA and EC public keys in the file,
+     * selected by the <code>kid</code> in the token's header, instead of
+     * with {@link #SECRET_PARAM_NAME}. The file is watched, so keys can be
+     * rotated without a restart.
+     */
+    public static final String JWKS_FILE_PARAM_NAME = "JWT_JWKS_FILE";
+
+    /**
+     * Optional init parameter with the maximum number of verified tokens to
+     * cache. Repeat requests with a cached token skip signature
+     * verification and claim parsing. If unset or 0, tokens are verified on
+     * every request.
+     */
+    public static final String CACHE_SIZE_PARAM_NAME = "JWT_CACHE_SIZE";
+
+    /**
+     * Optional init parameter with the JMX object name under which to
+     * register the verified-token cache's statistics.
+     */
+    public static final String CACHE_MBEAN_PARAM_NAME = "JWT_CACHE_MBEAN_NAME";
+
+    /**
+     * Optional init parameter. If <code>true</code>, the filter does not
+     * create an HTTP session for requests with a bearer token, and the roles
+     * are available only from the wrapped request. A <code>roles</code>
+     * attribute left in an existing session by an earlier, stateful
+     * request is removed, and a session with no other attributes is
+     * invalidated. The default is <code>false</code>.
+     */
+    public static final String STATELESS_PARAM_NAME = "JWT_STATELESS";
+
+    /**
+     * Name of the request attribute that is set to {@link Boolean#TRUE} when
+     * the request was authenticated with a bearer token.
+     */
+    public static final String TOKEN_AUTHENTICATED_ATTRIBUTE = JwtFilter.class.getName() + ".tokenAuthenticated";
+
+    private static final String ROLES_ATTRIBUTE = "roles";
+
+    private JwtVerifier verifier;
+    private boolean stateless;
+    private VerifiedTokenCache tokenCache;
+    private ObjectName tokenCacheName;
 
     @Override
-    public void init(FilterConfig filterConfig) {
-        this.secret = filterConfig.getInitParameter(SECRET_PARAM_NAME);
+    public void init(FilterConfig filterConfig) throws ServletException {
+        initTokenCache(filterConfig);
+        this.stateless = Boolean.parseBoolean(filterConfig.getInitParameter(STATELESS_PARAM_NAME));
+        String issuer = filterConfig.getInitParameter(ISSUER_PARAM_NAME);
+        String leewayParam = filterConfig.getInitParameter(LEEWAY_PARAM_NAME);
+        String jwksFile = filterConfig.getInitParameter(JWKS_FILE_PARAM_NAME);
+        String secret = filterConfig.getInitParameter(SECRET_PARAM_NAME);
+        try {
+            long leeway = leewayParam != null ? Long.parseLong(leewayParam.trim()) : 0L;
+            if (jwksFile != null) {
+                JwksJwtVerifier jwks = new JwksJwtVerifier(Paths.get(jwksFile), issuer, leeway);
+                jwks.watch();
+                this.verifier = jwks;
+                if (this.tokenCache != null) {
+                    jwks.addReloadListener(this.tokenCache::clear);
+                }
+            } else if (secret != null) {
+                this.verifier = new HmacJwtVerifier(secret, issuer, leeway);
+            } else {
+                LOGGER.warn("Neither {} nor {} configured; bearer tokens will be rejected",
+                        SECRET_PARAM_NAME, JWKS_FILE_PARAM_NAME);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new ServletException("Invalid JWT filter configuration", ex);
+        }
+    }
+
+    private void initTokenCache(FilterConfig filterConfig) throws ServletException {
+        String cacheSize = filterConfig.getInitParameter(CACHE_SIZE_PARAM_NAME);
+        if (cacheSize == null || cacheSize.trim().isEmpty()) {
+            return;
+        }
+        try {
+            int size = Integer.parseInt(cacheSize.trim());
+            if (size > 0) {
+                this.tokenCache = new VerifiedTokenCache(size);
+                String mbeanName = filterConfig.getInitParameter(CACHE_MBEAN_PARAM_NAME);
+                if (mbeanName != null) {
+                    ObjectName on = new ObjectName(mbeanName);
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(this.tokenCache, on);
+                    this.tokenCacheName = on;
+                }
+            }
+        } catch (NumberFormatException | JMException ex) {
+            throw new ServletException("Invalid JWT token cache configuration", ex);
+        }
+    }
+
+    /**
+     * Gets the cache of verified tokens.
+     *
+     * @return the cache, or <code>null</code> if caching is disabled.
+     */
+    public VerifiedTokenCache getTokenCache() {
+        return this.tokenCache;
     }
 
     @Override
@@ -69,14 +186,23 @@ public class JwtFilter implements Filter {
         if (authorization != null && authorization.length() > AUTH_TYPE.length()) {
             String[] authParts = authorization.split(" ");
             if ("BEARER".equalsIgnoreCase(authParts[0].trim())) {
+                if (this.verifier == null) {
+                    httpResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    return;
+                }
                 try {
-                    DecodedJWT decodedJWT = JwtUtil.verifyAndDecode(authParts[1].trim(), this.secret);
-                    String[] roles = decodedJWT.getClaim("roles").asArray(String.class);
-                    String username = decodedJWT.getClaim("username").asString();
+                    VerifiedToken verified = verify(authParts[1].trim());
+                    String[] roles = verified.getRoles();
+                    String username = verified.getUsername();
                     Principal principal = () -> username;
-                    HttpSession session = httpRequest.getSession();
-                    session.setAttribute("roles", roles);
+                    if (this.stateless) {
+                        removeStaleRoles(httpRequest.getSession(false));
+                    } else {
+                        HttpSession session = httpRequest.getSession();
+                        session.setAttribute(ROLES_ATTRIBUTE, roles);
+                    }
                     RolesRequestWrapper wrapper = new RolesRequestWrapper(httpRequest, principal, roles, username);
+                    wrapper.setAttribute(TOKEN_AUTHENTICATED_ATTRIBUTE, Boolean.TRUE);
                     chain.doFilter(wrapper, response);
                 } catch (JWTVerificationException e) {
                     LOGGER.error(e.getLocalizedMessage(), e);
@@ -90,8 +216,71 @@ public class JwtFilter implements Filter {
         }
     }
 
+    /*
+     * Sessions that were created only to hold the roles of a token request
+     * are invalidated so that the container can reclaim them right away.
+     */
+    private static void removeStaleRoles(HttpSession session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            if (session.getAttribute(ROLES_ATTRIBUTE) != null) {
+                session.removeAttribute(ROLES_ATTRIBUTE);
+                if (!session.getAttributeNames().hasMoreElements()) {
+                    session.invalidate();
+                }
+            }
+        } catch (IllegalStateException ex) {
+            LOGGER.debug("Session was invalidated concurrently", ex);
+        }
+    }
+
+    private VerifiedToken verify(String token) {
+        VerifiedTokenCache cache = this.tokenCache;
+        if (cache != null) {
+            VerifiedToken verified = cache.get(token);
+            if (verified != null && isKeyCurrent(verified)) {
+                return verified;
+            }
+        }
+        DecodedJWT decodedJWT = this.verifier.verify(token);
+        VerifiedToken verified = new VerifiedToken(
+                decodedJWT.getClaim("username").asString(),
+                decodedJWT.getClaim("roles").asArray(String.class),
+                decodedJWT.getExpiresAt().getTime(),
+                decodedJWT.getKeyId());
+        if (cache != null) {
+            cache.put(token, verified);
+        }
+        return verified;
+    }
+
+    /*
+     * A cached token must not outlive the removal of the key that verified
+     * it. The cache is also cleared when the key set is reloaded, but a
+     * verification that was in progress during the reload may cache its
+     * token afterwards.
+     */
+    private boolean isKeyCurrent(VerifiedToken verified) {
+        return !(this.verifier instanceof JwksJwtVerifier)
+                || verified.getKeyId() == null
+                || ((JwksJwtVerifier) this.verifier).getKeyIds().contains(verified.getKeyId());
+    }
+
     @Override
     public void destroy() {
+        if (this.verifier instanceof JwksJwtVerifier) {
+            ((JwksJwtVerifier) this.verifier).close();
+        }
+        if (this.tokenCacheName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.tokenCacheName);
+            } catch (JMException ex) {
+                LOGGER.warn("Error unregistering " + this.tokenCacheName, ex);
+            }
+            this.tokenCacheName = null;
+        }
     }
 }
 
@@ -0,0 +1,233 @@
+package org.eurekaclinical.common.filter;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of bearer tokens that have already been verified, so that
+ * repeat requests with the same token skip signature verification and claim
+ * parsing. Tokens are keyed by their SHA-256 hash, so the cache does not
+ * retain the tokens themselves. An entry is only returned until the
+ * token's expiration time. When the cache is full, the least recently used
+ * token is evicted. This class is thread-safe.
+ *
+ * @author Andrew Post
+ */
+public final class VerifiedTokenCache implements VerifiedTokenCacheMXBean {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError("SHA-256 is a required algorithm", ex);
+        }
+    });
+
+    private final int maxSize;
+    private final LinkedHashMap<ByteBuffer, VerifiedToken> entries;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * Creates a cache.
+     *
+     * @param inMaxSize the maximum number of tokens to cache. Must be
+     * positive.
+     */
+    public VerifiedTokenCache(int inMaxSize) {
+        if (inMaxSize <= 0) {
+            throw new IllegalArgumentException("inMaxSize must be positive");
+        }
+        this.maxSize = inMaxSize;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.entries = new LinkedHashMap<ByteBuffer, VerifiedToken>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, VerifiedToken> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the verified claims of a token.
+     *
+     * @param token the encoded token.
+     * @return the claims, or <code>null</code> if the token is not in the
+     * cache or has expired.
+     */
+    public VerifiedToken get(String token) {
+        ByteBuffer key = key(token);
+        long now = System.currentTimeMillis();
+        synchronized (this.entries) {
+            VerifiedToken verified = this.entries.get(key);
+            if (verified != null) {
+                if (verified.expiresAt > now) {
+                    this.hits.increment();
+                    return verified;
+                }
+                this.entries.remove(key);
+            }
+        }
+        this.misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the claims of a token that has just been verified. Tokens that
+     * have already expired are not cached.
+     *
+     * @param token the encoded token.
+     * @param verified its claims.
+     */
+    public void put(String token, VerifiedToken verified) {
+        if (verified.expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        ByteBuffer key = key(token);
+        synchronized (this.entries) {
+            this.entries.put(key, verified);
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long h = this.hits.sum();
+        long total = h + this.misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    private static ByteBuffer key(String token) {
+        return ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * The claims of a verified token that are needed to authenticate a
+     * request.
+     */
+    public static final class VerifiedToken {
+
+        private final String username;
+        private final String[] roles;
+        private final long expiresAt;
+        private final String keyId;
+
+        /**
+         * Creates the claims of a verified token.
+         *
+         * @param inUsername the value of the <code>username</code> claim.
+         * @param inRoles the value of the <code>roles</code> claim.
+         * @param inExpiresAt the token's expiration time, in milliseconds
+         * since the epoch.
+         */
+        public VerifiedToken(String inUsername, String[] inRoles, long inExpiresAt) {
+            this(inUsername, inRoles, inExpiresAt, null);
+        }
+
+        /**
+         * Creates the claims of a verified token.
+         *
+         * @param inUsername the value of the <code>username</code> claim.
+         * @param inRoles the value of the <code>roles</code> claim.
+         * @param inExpiresAt the token's expiration time, in milliseconds
+         * since the epoch.
+         * @param inKeyId the <code>kid</code> of the key that verified the
+         * token, or <code>null</code> if it had none.
+         */
+        public VerifiedToken(String inUsername, String[] inRoles, long inExpiresAt, String inKeyId) {
+            this.username = inUsername;
+            this.roles = inRoles != null ? inRoles.clone() : null;
+            this.expiresAt = inExpiresAt;
+            this.keyId = inKeyId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Gets the roles. A new array is returned on each call.
+         *
+         * @return the roles, or <code>null</code> if the token had no roles
+         * claim.
+         */
+        public String[] getRoles() {
+            return roles != null ? roles.clone() : null;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.eurekaclinical.common.filter;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Management interface of the {@link VerifiedTokenCache}.
+ *
+ * @author Andrew Post
+ */
+public interface VerifiedTokenCacheMXBean {
+
+    /**
+     * Gets the number of tokens that were found in the cache, so that their
+     * verification was skipped.
+     *
+     * @return the number of hits.
+     */
+    long getHits();
+
+    /**
+     * Gets the number of tokens that were not in the cache or whose cached
+     * entry had expired.
+     *
+     * @return the number of misses.
+     */
+    long getMisses();
+
+    /**
+     * Gets the fraction of lookups that were hits.
+     *
+     * @return the hit rate, between 0 and 1, or 0 if there have been no
+     * lookups.
+     */
+    double getHitRate();
+
+    /**
+     * Gets the number of tokens that were evicted to keep the cache within
+     * its maximum size.
+     *
+     * @return the number of evictions.
+     */
+    long getEvictions();
+
+    /**
+     * Gets the number of tokens in the cache.
+     *
+     * @return the number of entries.
+     */
+    int getSize();
+
+    /**
+     * Gets the maximum number of tokens in the cache.
+     *
+     * @return the maximum size.
+     */
+    int getMaxSize();
+
+    /**
+     * Removes all tokens from the cache.
+     */
+    void clear();
+}
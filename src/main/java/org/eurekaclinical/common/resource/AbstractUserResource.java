@@ -19,16 +19,22 @@ package org.eurekaclinical.common.resource;
  * limitations under the License.
  * #L%
  */
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import org.eurekaclinical.standardapis.dao.UserDao;
 import org.eurekaclinical.common.comm.User;
 import org.eurekaclinical.standardapis.entity.RoleEntity;
 import org.eurekaclinical.standardapis.entity.UserEntity;
+import org.eurekaclinical.standardapis.exception.HttpStatusException;
 
 /**
  *
@@ -36,8 +42,72 @@ import org.eurekaclinical.standardapis.entity.UserEntity;
  */
 public abstract class AbstractUserResource<U extends User, E extends UserEntity<R>, R extends RoleEntity> extends AbstractNamedReadWriteResource<E, U> {
 
+    /**
+     * The maximum number of ids that may be requested in one call to
+     * {@link #getByIds(java.util.List, javax.servlet.http.HttpServletRequest) }.
+     */
+    public static final int MAX_IDS_PER_REQUEST = 500;
+
+    private final UserDao<E> userDao;
+
     public AbstractUserResource(UserDao<E> inUserDao) {
         super(inUserDao);
+        this.userDao = inUserDao;
+    }
+
+    /**
+     * Gets the users with the given unique identifiers in one call, for
+     * example, <code>/byids?id=1&amp;id=2</code>. Users that do not exist or
+     * that the requesting user is not authorized to access are omitted.
+     *
+     * @param inIds the unique identifiers. At most
+     * {@link #MAX_IDS_PER_REQUEST} may be given.
+     * @param req the HTTP servlet request.
+     * @return the users, in the order of their first occurrence in
+     * <code>inIds</code>.
+     *
+     * @throws HttpStatusException if too many ids are given.
+     */
+    @GET
+    @Path("/byids")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<U> getByIds(@QueryParam("id") List<Long> inIds, @Context HttpServletRequest req) {
+        LinkedHashSet<Long> ids = new LinkedHashSet<>(inIds);
+        ids.remove(null);
+        if (ids.size() > MAX_IDS_PER_REQUEST) {
+            throw new HttpStatusException(Response.Status.BAD_REQUEST, "At most " + MAX_IDS_PER_REQUEST + " ids may be requested");
+        }
+        boolean adminAllowed = !isRestricted() || req.isUserInRole("admin");
+        List<U> results = new ArrayList<>(ids.size());
+        if (adminAllowed) {
+            for (E entity : retrieveByIds(new ArrayList<>(ids))) {
+                if (isAuthorizedEntity(entity, req)) {
+                    results.add(toComm(entity, req));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves the user entities with the given unique identifiers. The
+     * default implementation retrieves them one at a time. Override this
+     * method to retrieve them with a single query if the user data access
+     * object supports it.
+     *
+     * @param inIds the unique identifiers, with no duplicates or
+     * <code>null</code>s.
+     * @return the entities that exist, in the order of <code>inIds</code>.
+     */
+    protected List<E> retrieveByIds(List<Long> inIds) {
+        List<E> entities = new ArrayList<>(inIds.size());
+        for (Long id : inIds) {
+            E entity = this.userDao.retrieve(id);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
     }
 
     @GET
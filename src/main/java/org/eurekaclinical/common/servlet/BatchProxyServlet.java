@@ -0,0 +1,628 @@
+package org.eurekaclinical.common.servlet;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.inject.Injector;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.util.MultivaluedMapImpl;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eurekaclinical.common.comm.clients.ClientException;
+import org.eurekaclinical.common.comm.clients.ProxyResponse;
+import org.eurekaclinical.common.comm.clients.ProxyingClient;
+import org.jasig.cas.client.util.AssertionHolder;
+import org.jasig.cas.client.validation.Assertion;
+
+/**
+ * Proxies several calls to backend services in one exchange. The request
+ * body is a JSON array of sub-requests of the form
+ * <pre>
+ * {"method": "GET", "path": "/users/1", "query": {"name": ["value"]},
+ *  "headers": {"name": "value"}, "body": ...}
+ * </pre>
+ * in which only <code>path</code> is required. Paths are routed like the
+ * path info of <code>/proxy-resource/*</code> calls, and must be normalized,
+ * URI-encoded paths without dot segments, empty segments, queries or
+ * fragments. Sub-requests are sent
+ * with the batch request's headers, which a sub-request's own headers
+ * replace, except that hop-by-hop, cookie, host and forwarding headers in
+ * a sub-request are ignored. The sub-requests run
+ * concurrently, and the response is a JSON array, in request order, of
+ * objects of the form
+ * <pre>
+ * {"status": 200, "headers": {"name": ["value"]}, "body": ...}
+ * </pre>
+ * JSON bodies are embedded as JSON, and other bodies as strings. Results are
+ * streamed as soon as each one and its predecessors are complete.
+ *
+ * @author Andrew Post
+ */
+@Singleton
+public class BatchProxyServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Init parameter for the maximum number of sub-requests in a batch. The
+     * default is {@link #DEFAULT_MAX_REQUESTS}.
+     */
+    public static final String MAX_REQUESTS_PARAM = "maxRequests";
+
+    /**
+     * Init parameter for the number of threads that run sub-requests. The
+     * default is {@link #DEFAULT_THREADS}.
+     */
+    public static final String THREADS_PARAM = "threads";
+
+    /**
+     * Init parameter for the number of sub-requests, across all batches,
+     * that may wait for a thread. A batch that does not fit gets status 503.
+     * The default is {@link #DEFAULT_QUEUE_SIZE}.
+     */
+    public static final String QUEUE_SIZE_PARAM = "queueSize";
+
+    /**
+     * Init parameter for how long, in milliseconds, to wait for all
+     * sub-requests of a batch. Sub-requests that have not finished by then
+     * get status 504. The default is {@link #DEFAULT_TIMEOUT}.
+     */
+    public static final String TIMEOUT_PARAM = "timeout";
+
+    /**
+     * Init parameter for the path to which the {@link ProxyServlet} is
+     * mapped, which is used to rewrite <code>Location</code> headers. The
+     * default is {@link #DEFAULT_PROXY_PATH}.
+     */
+    public static final String PROXY_PATH_PARAM = "proxyPath";
+
+    /**
+     * Init parameter for the maximum size, in bytes, of the body of each
+     * sub-response. Sub-requests whose response body is larger get status
+     * 502. The default is {@link #DEFAULT_MAX_BODY_SIZE}.
+     */
+    public static final String MAX_BODY_SIZE_PARAM = "maxBodySize";
+
+    /**
+     * Init parameter for the maximum total size, in bytes, of the bodies of
+     * all sub-responses of a batch. Sub-requests whose response body would
+     * exceed what is left get status 502. The default is
+     * {@link #DEFAULT_MAX_BATCH_SIZE}.
+     */
+    public static final String MAX_BATCH_SIZE_PARAM = "maxBatchSize";
+
+    /**
+     * Init parameter that turns on stateless mode when set to
+     * <code>true</code>, as {@link ProxyServlet#STATELESS_PARAM} does for
+     * the proxy servlet.
+     */
+    public static final String STATELESS_PARAM = ProxyServlet.STATELESS_PARAM;
+
+    public static final int DEFAULT_MAX_REQUESTS = 20;
+
+    public static final long DEFAULT_MAX_BODY_SIZE = 10L * 1024 * 1024;
+
+    public static final long DEFAULT_MAX_BATCH_SIZE = 50L * 1024 * 1024;
+
+    public static final int DEFAULT_THREADS = 50;
+
+    public static final int DEFAULT_QUEUE_SIZE = 200;
+
+    public static final long DEFAULT_TIMEOUT = 60000;
+
+    public static final String DEFAULT_PROXY_PATH = "/proxy-resource";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Headers that sub-requests may not set, in addition to those that
+     * {@link ProxyServlet} does not forward. The forwarding headers are
+     * computed by the gateway and must not be spoofed.
+     */
+    private static final HeaderNameMatcher SUB_REQUEST_HEADERS_TO_EXCLUDE = new HeaderNameMatcher(
+            HttpHeaders.HOST, "Forwarded", "X-Forwarded-For", "X-Forwarded-Proto",
+            "X-Forwarded-Host", "X-Forwarded-Port", "X-Forwarded-Prefix");
+
+    private final Injector injector;
+    private Provider<ProxyingClient> proxyingClientProvider;
+    private int maxRequests;
+    private long maxBodySize;
+    private long maxBatchSize;
+    private long timeout;
+    private String proxyPath;
+    private ExecutorService executor;
+
+    @Inject
+    public BatchProxyServlet(Injector inInjector) {
+        this.injector = inInjector;
+    }
+
+    @Override
+    public void init() throws ServletException {
+        this.proxyingClientProvider = ProxyServlet.proxyingClientProvider(this.injector,
+                Boolean.parseBoolean(getInitParameter(STATELESS_PARAM)));
+        try {
+            String maxRequestsStr = getInitParameter(MAX_REQUESTS_PARAM);
+            this.maxRequests = maxRequestsStr != null ? Integer.parseInt(maxRequestsStr) : DEFAULT_MAX_REQUESTS;
+            String maxBodySizeStr = getInitParameter(MAX_BODY_SIZE_PARAM);
+            this.maxBodySize = maxBodySizeStr != null ? Long.parseLong(maxBodySizeStr) : DEFAULT_MAX_BODY_SIZE;
+            String maxBatchSizeStr = getInitParameter(MAX_BATCH_SIZE_PARAM);
+            this.maxBatchSize = maxBatchSizeStr != null ? Long.parseLong(maxBatchSizeStr) : DEFAULT_MAX_BATCH_SIZE;
+            String timeoutStr = getInitParameter(TIMEOUT_PARAM);
+            this.timeout = timeoutStr != null ? Long.parseLong(timeoutStr) : DEFAULT_TIMEOUT;
+            String threadsStr = getInitParameter(THREADS_PARAM);
+            int threads = threadsStr != null ? Integer.parseInt(threadsStr) : DEFAULT_THREADS;
+            String queueSizeStr = getInitParameter(QUEUE_SIZE_PARAM);
+            int queueSize = queueSizeStr != null ? Integer.parseInt(queueSizeStr) : DEFAULT_QUEUE_SIZE;
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), (Runnable r) -> {
+                        Thread thread = new Thread(r, "BatchProxyServlet-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } catch (IllegalArgumentException ex) {
+            throw new ServletException("Invalid init parameter", ex);
+        }
+        String proxyPathStr = getInitParameter(PROXY_PATH_PARAM);
+        this.proxyPath = proxyPathStr != null ? proxyPathStr : DEFAULT_PROXY_PATH;
+    }
+
+    @Override
+    public void destroy() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
+            throws IOException {
+        List<SubRequest> subRequests;
+        try {
+            subRequests = parse(servletRequest.getInputStream());
+        } catch (JsonProcessingException | IllegalArgumentException ex) {
+            servletResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+            return;
+        }
+        ProxyingClient client = this.proxyingClientProvider.get();
+        MultivaluedMap<String, String> commonHeaders = ProxyServlet.extractRequestHeaders(servletRequest);
+        removeIgnoreCase(commonHeaders, HttpHeaders.CONTENT_TYPE);
+        String proxyResourceUrl = ProxyServlet.baseUrl(servletRequest.getContextPath() + this.proxyPath, servletRequest).toString();
+        Assertion assertion = AssertionHolder.getAssertion();
+        BodyLimits limits = new BodyLimits(this.maxBodySize, this.maxBatchSize);
+        List<Future<SubResponse>> futures = new ArrayList<>(subRequests.size());
+        try {
+            for (SubRequest subRequest : subRequests) {
+                futures.add(this.executor.submit(() -> {
+                    AssertionHolder.setAssertion(assertion);
+                    try {
+                        return execute(client, subRequest, commonHeaders, proxyResourceUrl, limits);
+                    } finally {
+                        AssertionHolder.clear();
+                    }
+                }));
+            }
+        } catch (RejectedExecutionException ex) {
+            for (Future<SubResponse> future : futures) {
+                future.cancel(true);
+            }
+            servletResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        servletResponse.setStatus(HttpServletResponse.SC_OK);
+        servletResponse.setContentType(MediaType.APPLICATION_JSON);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+        try (JsonGenerator generator = MAPPER.getJsonFactory().createJsonGenerator(servletResponse.getOutputStream(), JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (Future<SubResponse> future : futures) {
+                writeSubResponse(generator, await(future, deadline));
+                generator.flush();
+            }
+            generator.writeEndArray();
+        } finally {
+            for (Future<SubResponse> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private List<SubRequest> parse(InputStream inputStream) throws IOException {
+        JsonNode root = MAPPER.readTree(inputStream);
+        if (root == null || !root.isArray()) {
+            throw new IllegalArgumentException("Expected a JSON array of requests");
+        }
+        if (root.size() > this.maxRequests) {
+            throw new IllegalArgumentException("At most " + this.maxRequests + " requests are allowed per batch");
+        }
+        List<SubRequest> result = new ArrayList<>(root.size());
+        for (JsonNode node : root) {
+            result.add(new SubRequest(node));
+        }
+        return result;
+    }
+
+    private static SubResponse execute(ProxyingClient client, SubRequest subRequest,
+            MultivaluedMap<String, String> commonHeaders, String proxyResourceUrl, BodyLimits limits) throws IOException {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl();
+        headers.putAll(commonHeaders);
+        for (Map.Entry<String, List<String>> entry : subRequest.headers.entrySet()) {
+            String key = entry.getKey();
+            if (ProxyServlet.requestHeadersToExclude.matches(key) || SUB_REQUEST_HEADERS_TO_EXCLUDE.matches(key)) {
+                continue;
+            }
+            removeIgnoreCase(headers, key);
+            headers.put(key, entry.getValue());
+        }
+        try {
+            ProxyResponse proxyResponse;
+            switch (subRequest.method) {
+                case HttpMethod.GET:
+                    proxyResponse = client.proxyGet(subRequest.path, subRequest.query, headers);
+                    break;
+                case HttpMethod.DELETE:
+                    proxyResponse = client.proxyDelete(subRequest.path, subRequest.query, headers);
+                    break;
+                case HttpMethod.POST:
+                    proxyResponse = client.proxyPost(subRequest.path, subRequest.bodyStream(), subRequest.query, headers);
+                    break;
+                default:
+                    proxyResponse = client.proxyPut(subRequest.path, subRequest.bodyStream(), subRequest.query, headers);
+                    break;
+            }
+            ClientResponse clientResponse = proxyResponse.getClientResponse();
+            try {
+                MultivaluedMap<String, String> responseHeaders = new MultivaluedMapImpl();
+                for (Map.Entry<String, List<String>> entry : clientResponse.getHeaders().entrySet()) {
+                    String key = entry.getKey();
+                    if (ProxyServlet.responseHeadersToExclude.matches(key)) {
+                        continue;
+                    }
+                    boolean location = HttpHeaders.LOCATION.equalsIgnoreCase(key) || HttpHeaders.CONTENT_LOCATION.equalsIgnoreCase(key);
+                    for (String val : entry.getValue()) {
+                        responseHeaders.add(key, location ? proxyResponse.getReplacementPathAndClient().revertPath(val, proxyResourceUrl) : val);
+                    }
+                }
+                InputStream entityInputStream = clientResponse.getEntityInputStream();
+                byte[] body = entityInputStream != null
+                        ? readFully(entityInputStream, clientResponse.getLength(), limits)
+                        : new byte[0];
+                return new SubResponse(clientResponse.getStatus(), responseHeaders, body);
+            } finally {
+                proxyResponse.close();
+            }
+        } catch (BodyTooLargeException ex) {
+            return SubResponse.error(HttpServletResponse.SC_BAD_GATEWAY, ex.getMessage());
+        } catch (ClientException ex) {
+            return SubResponse.error(ex.getResponseStatus().getStatusCode(), ex.getMessage());
+        } catch (RuntimeException ex) {
+            return SubResponse.error(HttpServletResponse.SC_BAD_GATEWAY, ex.getMessage());
+        }
+    }
+
+    /**
+     * Removes a header from a map whose keys are case-sensitive.
+     *
+     * @param headers the headers.
+     * @param name the header's name, in any case.
+     */
+    private static void removeIgnoreCase(MultivaluedMap<String, String> headers, String name) {
+        headers.keySet().removeIf(name::equalsIgnoreCase);
+    }
+
+    /**
+     * Gets the first value of a header from a map whose keys are
+     * case-sensitive.
+     *
+     * @param headers the headers.
+     * @param name the header's name, in any case.
+     * @return the first value, or <code>null</code> if there is none.
+     */
+    private static String getFirstIgnoreCase(MultivaluedMap<String, String> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    private static SubResponse await(Future<SubResponse> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            return SubResponse.error(HttpServletResponse.SC_GATEWAY_TIMEOUT, "Timed out");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return SubResponse.error(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Interrupted");
+        } catch (ExecutionException ex) {
+            return SubResponse.error(HttpServletResponse.SC_BAD_GATEWAY, ex.getCause().getMessage());
+        }
+    }
+
+    private static void writeSubResponse(JsonGenerator generator, SubResponse subResponse) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("status", subResponse.status);
+        generator.writeObjectFieldStart("headers");
+        for (Map.Entry<String, List<String>> entry : subResponse.headers.entrySet()) {
+            generator.writeArrayFieldStart(entry.getKey());
+            for (String val : entry.getValue()) {
+                generator.writeString(val);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+        generator.writeFieldName("body");
+        if (subResponse.body.length == 0) {
+            generator.writeNull();
+        } else {
+            JsonNode json = null;
+            String contentType = getFirstIgnoreCase(subResponse.headers, HttpHeaders.CONTENT_TYPE);
+            if (contentType != null && contentType.toLowerCase().contains("json")) {
+                try {
+                    json = MAPPER.readTree(subResponse.body);
+                } catch (JsonProcessingException ex) {
+                    json = null;
+                }
+            }
+            if (json != null) {
+                generator.writeTree(json);
+            } else {
+                generator.writeString(new String(subResponse.body, StandardCharsets.UTF_8));
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads a sub-response body, failing as soon as it exceeds the per-body
+     * limit or what is left of the batch's limit.
+     *
+     * @param inputStream the body.
+     * @param contentLength the declared length of the body, or -1 if unknown.
+     * @param limits the limits.
+     * @return the body.
+     * @throws BodyTooLargeException if a limit was exceeded.
+     * @throws IOException if reading the body failed.
+     */
+    private static byte[] readFully(InputStream inputStream, int contentLength, BodyLimits limits) throws IOException {
+        if (contentLength > limits.maxBodySize) {
+            throw new BodyTooLargeException("Response body exceeds " + limits.maxBodySize + " bytes");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength > 0 ? contentLength : 8192);
+        byte[] buffer = new byte[8192];
+        int n;
+        while (-1 != (n = inputStream.read(buffer))) {
+            if (out.size() + n > limits.maxBodySize) {
+                throw new BodyTooLargeException("Response body exceeds " + limits.maxBodySize + " bytes");
+            }
+            if (limits.batchRemaining.addAndGet(-n) < 0) {
+                throw new BodyTooLargeException("Response bodies of the batch exceed " + limits.maxBatchSize + " bytes");
+            }
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The size limits of the sub-response bodies of one batch.
+     */
+    private static final class BodyLimits {
+
+        private final long maxBodySize;
+        private final long maxBatchSize;
+        private final AtomicLong batchRemaining;
+
+        BodyLimits(long inMaxBodySize, long inMaxBatchSize) {
+            this.maxBodySize = inMaxBodySize;
+            this.maxBatchSize = inMaxBatchSize;
+            this.batchRemaining = new AtomicLong(inMaxBatchSize);
+        }
+    }
+
+    /**
+     * Thrown when a sub-response body exceeds a size limit.
+     */
+    private static final class BodyTooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A parsed sub-request.
+     */
+    private static final class SubRequest {
+
+        private final String method;
+        private final String path;
+        private final MultivaluedMap<String, String> query;
+        private final MultivaluedMap<String, String> headers;
+        private final byte[] body;
+
+        SubRequest(JsonNode node) throws IOException {
+            if (!node.isObject()) {
+                throw new IllegalArgumentException("Each request must be a JSON object");
+            }
+            JsonNode methodNode = node.get("method");
+            this.method = methodNode != null ? methodNode.asText().toUpperCase() : HttpMethod.GET;
+            if (!HttpMethod.GET.equals(this.method) && !HttpMethod.POST.equals(this.method)
+                    && !HttpMethod.PUT.equals(this.method) && !HttpMethod.DELETE.equals(this.method)) {
+                throw new IllegalArgumentException("Unsupported method " + this.method);
+            }
+            JsonNode pathNode = node.get("path");
+            if (pathNode == null || !pathNode.isTextual() || !pathNode.asText().startsWith("/")) {
+                throw new IllegalArgumentException("Each request must have a path starting with /");
+            }
+            this.path = checkedPath(pathNode.asText());
+            MultivaluedMap<String, String> queryMap = toMultivaluedMap(node.get("query"));
+            this.query = queryMap.isEmpty() ? null : queryMap;
+            this.headers = toMultivaluedMap(node.get("headers"));
+            JsonNode bodyNode = node.get("body");
+            if (bodyNode != null && !bodyNode.isNull()) {
+                this.body = bodyNode.isTextual()
+                        ? bodyNode.asText().getBytes(StandardCharsets.UTF_8)
+                        : MAPPER.writeValueAsBytes(bodyNode);
+                if (getFirstIgnoreCase(this.headers, HttpHeaders.CONTENT_TYPE) == null) {
+                    this.headers.putSingle(HttpHeaders.CONTENT_TYPE,
+                            bodyNode.isTextual() ? MediaType.TEXT_PLAIN : MediaType.APPLICATION_JSON);
+                }
+            } else {
+                this.body = new byte[0];
+            }
+        }
+
+        InputStream bodyStream() {
+            return new ByteArrayInputStream(this.body);
+        }
+
+        /**
+         * Checks a sub-request's path. Unlike the path info of
+         * <code>/proxy-resource/*</code> calls, it has not been normalized by
+         * the container, so paths that could escape the matching route's
+         * replacement prefix on the backend are rejected: paths with
+         * <code>.</code> or <code>..</code> segments, encoded or not, empty
+         * segments, encoded slashes, backslashes, queries or fragments.
+         *
+         * @param rawPath the path from the request.
+         * @return the normalized path.
+         * @throws IllegalArgumentException if the path is not allowed.
+         */
+        private static String checkedPath(String rawPath) {
+            if (rawPath.indexOf('\\') >= 0 || rawPath.indexOf('#') >= 0 || rawPath.indexOf('?') >= 0
+                    || rawPath.contains("//")) {
+                throw new IllegalArgumentException("Invalid path " + rawPath);
+            }
+            for (String segment : rawPath.substring(1).split("/", -1)) {
+                String decoded;
+                try {
+                    decoded = URLDecoder.decode(segment.replace("+", "%2B"), "UTF-8");
+                } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("Invalid path " + rawPath, ex);
+                }
+                if (".".equals(decoded) || "..".equals(decoded)
+                        || decoded.indexOf('/') >= 0 || decoded.indexOf('\\') >= 0) {
+                    throw new IllegalArgumentException("Invalid path " + rawPath);
+                }
+            }
+            String normalized;
+            try {
+                normalized = URI.create(rawPath).normalize().getRawPath();
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid path " + rawPath, ex);
+            }
+            if (!rawPath.equals(normalized)) {
+                throw new IllegalArgumentException("Invalid path " + rawPath);
+            }
+            return normalized;
+        }
+
+        /**
+         * Converts a JSON object whose values are strings or arrays of
+         * strings.
+         */
+        private static MultivaluedMap<String, String> toMultivaluedMap(JsonNode node) {
+            MultivaluedMap<String, String> result = new MultivaluedMapImpl();
+            if (node == null || node.isNull()) {
+                return result;
+            }
+            if (!node.isObject()) {
+                throw new IllegalArgumentException("Expected a JSON object of names and values");
+            }
+            for (Iterator<Map.Entry<String, JsonNode>> itr = node.getFields(); itr.hasNext();) {
+                Map.Entry<String, JsonNode> field = itr.next();
+                JsonNode value = field.getValue();
+                if (value.isArray()) {
+                    for (JsonNode element : value) {
+                        result.add(field.getKey(), element.asText());
+                    }
+                } else {
+                    result.add(field.getKey(), value.asText());
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The result of a sub-request.
+     */
+    private static final class SubResponse {
+
+        private final int status;
+        private final MultivaluedMap<String, String> headers;
+        private final byte[] body;
+
+        SubResponse(int inStatus, MultivaluedMap<String, String> inHeaders, byte[] inBody) {
+            this.status = inStatus;
+            this.headers = inHeaders;
+            this.body = inBody;
+        }
+
+        static SubResponse error(int status, String message) {
+            MultivaluedMap<String, String> headers = new MultivaluedMapImpl();
+            headers.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN);
+            return new SubResponse(status, headers,
+                    message != null ? message.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        }
+    }
+
+}
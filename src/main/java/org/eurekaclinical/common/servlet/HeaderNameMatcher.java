@@ -0,0 +1,58 @@
+package org.eurekaclinical.common.servlet;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An immutable set of HTTP header names that is looked up
+ * case-insensitively without allocating.
+ *
+ * @author Andrew Post
+ */
+final class HeaderNameMatcher {
+
+    private final Set<String> names;
+
+    /**
+     * Creates a matcher.
+     *
+     * @param inNames the header names.
+     */
+    HeaderNameMatcher(String... inNames) {
+        TreeSet<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(Arrays.asList(inNames));
+        this.names = set;
+    }
+
+    /**
+     * Returns whether a header name is in this set, ignoring case.
+     *
+     * @param name the header name.
+     * @return <code>true</code> if it is, <code>false</code> otherwise.
+     */
+    boolean matches(String name) {
+        return this.names.contains(name);
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.eurekaclinical.common.servlet;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * A read-only {@link MultivaluedMap} view of a servlet request's parameter
+ * map. Values are wrapped on access rather than copied up front.
+ *
+ * @author Andrew Post
+ */
+final class ParameterMapView extends AbstractMap<String, List<String>> implements MultivaluedMap<String, String> {
+
+    private final Map<String, String[]> parameters;
+
+    /**
+     * Creates a view.
+     *
+     * @param inParameters the parameter map, as returned by
+     * {@link javax.servlet.ServletRequest#getParameterMap() }.
+     */
+    ParameterMapView(Map<String, String[]> inParameters) {
+        this.parameters = inParameters;
+    }
+
+    @Override
+    public int size() {
+        return this.parameters.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.parameters.containsKey(key);
+    }
+
+    @Override
+    public List<String> get(Object key) {
+        String[] values = this.parameters.get(key);
+        return values != null ? Arrays.asList(values) : null;
+    }
+
+    @Override
+    public String getFirst(String key) {
+        String[] values = this.parameters.get(key);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    @Override
+    public void putSingle(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(String key, String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        return new AbstractSet<Entry<String, List<String>>>() {
+            @Override
+            public Iterator<Entry<String, List<String>>> iterator() {
+                Iterator<Entry<String, String[]>> itr = parameters.entrySet().iterator();
+                return new Iterator<Entry<String, List<String>>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return itr.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, List<String>> next() {
+                        Entry<String, String[]> entry = itr.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), Arrays.asList(entry.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return parameters.size();
+            }
+        };
+    }
+
+}
@@ -20,9 +20,11 @@ package org.eurekaclinical.common.servlet;
  * #L%
  */
 import com.google.inject.Injector;
+import com.google.inject.ProvisionException;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.core.util.MultivaluedMapImpl;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -32,18 +34,32 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.InflaterInputStream;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.ws.rs.core.HttpHeaders;
 import org.eurekaclinical.common.comm.clients.ClientException;
 import org.eurekaclinical.common.comm.clients.ProxyResponse;
 import org.eurekaclinical.common.comm.clients.ProxyingClient;
 import org.eurekaclinical.common.comm.clients.ReplacementPathAndClient;
+import org.eurekaclinical.common.comm.clients.Router;
+import org.eurekaclinical.common.comm.clients.RouterReloader;
+import org.eurekaclinical.common.comm.clients.RouterTable;
+import org.eurekaclinical.common.comm.clients.RouterTableLoadException;
+import org.jasig.cas.client.util.AssertionHolder;
+import org.jasig.cas.client.validation.Assertion;
 
 /**
  * @author Sanjay Agravat, Miao Ai
@@ -53,137 +69,383 @@ public class ProxyServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
 
-    private static final Set<String> requestHeadersToExclude;
-
-    static {
-        requestHeadersToExclude = new HashSet<>();
-        for (String header : new String[]{
+    static final HeaderNameMatcher requestHeadersToExclude = new HeaderNameMatcher(
             "Connection", "Keep-Alive", "Proxy-Authenticate", "Proxy-Authorization",
             "TE", "Trailers", "Transfer-Encoding", "Upgrade", HttpHeaders.CONTENT_LENGTH,
-            HttpHeaders.COOKIE
-        }) {
-            requestHeadersToExclude.add(header.toUpperCase());
-        }
-    }
-
-    private static final Set<String> responseHeadersToExclude;
+            HttpHeaders.COOKIE);
 
-    static {
-        responseHeadersToExclude = new HashSet<>();
-        for (String header : new String[]{
+    static final HeaderNameMatcher responseHeadersToExclude = new HeaderNameMatcher(
             "Connection", "Keep-Alive", "Proxy-Authenticate", "Proxy-Authorization",
-            "TE", "Trailers", "Transfer-Encoding", "Upgrade", HttpHeaders.SET_COOKIE
-        }) {
-            responseHeadersToExclude.add(header.toUpperCase());
-        }
-    }
+            "TE", "Trailers", "Transfer-Encoding", "Upgrade", HttpHeaders.SET_COOKIE,
+            HttpHeaders.CONTENT_LENGTH);
+
+    /**
+     * Init parameter that turns on async mode when set to <code>true</code>.
+     */
+    public static final String ASYNC_PARAM = "async";
+
+    /**
+     * Init parameter for the timeout, in milliseconds, of proxied calls in
+     * async mode that do not match a route with its own timeout. The timeout
+     * applies to the time until the backend's response headers arrive; once
+     * the response is being streamed to the client, it no longer applies.
+     * The default is {@link #DEFAULT_ASYNC_TIMEOUT}. Zero or less means no
+     * timeout.
+     */
+    public static final String ASYNC_TIMEOUT_PARAM = "asyncTimeout";
+
+    /**
+     * Init parameter for the number of threads that make proxied calls in
+     * async mode. The default is {@link #DEFAULT_ASYNC_THREADS}.
+     */
+    public static final String ASYNC_THREADS_PARAM = "asyncThreads";
+
+    /**
+     * Init parameter that turns on stateless mode when set to
+     * <code>true</code>. In stateless mode, one {@link ProxyingClient}, with
+     * one {@link Router} and set of backend clients, serves all users of the
+     * application, instead of one per user session. Each call carries the
+     * user's CAS proxy ticket, so the backend clients returned by the
+     * {@link RouterTable} must be shared by all users and must have cookies
+     * disabled (see
+     * {@link org.eurekaclinical.common.comm.clients.ConnectionPoolConfig#setCookiesEnabled(boolean) }).
+     * Initialization fails if a client has cookies enabled, and a reloaded
+     * routing table with such a client is rejected.
+     */
+    public static final String STATELESS_PARAM = "stateless";
+
+    public static final long DEFAULT_ASYNC_TIMEOUT = 60000;
+
+    public static final int DEFAULT_ASYNC_THREADS = 200;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[COPY_BUFFER_SIZE]);
+
+    private static final int WAITING = 0;
+    private static final int RESPONDING = 1;
+    private static final int TIMED_OUT = 2;
 
     private final Injector injector;
+    private Provider<ProxyingClient> proxyingClientProvider;
+    private boolean async;
+    private long asyncTimeout;
+    private ExecutorService asyncExecutor;
+    private ScheduledExecutorService asyncTimer;
 
     @Inject
     public ProxyServlet(Injector inInjector) {
         this.injector = inInjector;
     }
 
+    /**
+     * Reads the init parameters. In async mode, which requires that the
+     * servlet and all filters in front of it, including Guice's filter, are
+     * declared as async-supported, the servlet releases the container thread
+     * while waiting on the backend service and while streaming the
+     * response. The proxied call runs on a pool of worker threads instead,
+     * and the client receives 504 (Gateway Timeout) if the backend's response
+     * headers do not arrive within the matching route's timeout.
+     *
+     * @throws ServletException if an init parameter is not a number, or in
+     * stateless mode, if the routing table could not be loaded or has a
+     * client with cookies enabled.
+     */
     @Override
     public void init() throws ServletException {
+        this.proxyingClientProvider = proxyingClientProvider(this.injector,
+                Boolean.parseBoolean(getInitParameter(STATELESS_PARAM)));
+        this.async = Boolean.parseBoolean(getInitParameter(ASYNC_PARAM));
+        if (this.async) {
+            try {
+                String timeoutStr = getInitParameter(ASYNC_TIMEOUT_PARAM);
+                this.asyncTimeout = timeoutStr != null ? Long.parseLong(timeoutStr) : DEFAULT_ASYNC_TIMEOUT;
+                String threadsStr = getInitParameter(ASYNC_THREADS_PARAM);
+                int threads = threadsStr != null ? Integer.parseInt(threadsStr) : DEFAULT_ASYNC_THREADS;
+                AtomicInteger threadNumber = new AtomicInteger();
+                this.asyncExecutor = Executors.newFixedThreadPool(threads, (Runnable r) -> {
+                    Thread thread = new Thread(r, "ProxyServlet-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.asyncTimer = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                    Thread thread = new Thread(r, "ProxyServlet-async-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            } catch (NumberFormatException ex) {
+                throw new ServletException("Invalid async init parameter", ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the provider of the proxying client.
+     *
+     * @param injector the injector.
+     * @param stateless whether to create one proxying client for all users
+     * (see {@link #STATELESS_PARAM}) instead of getting the session-scoped
+     * one from the injector.
+     * @return the provider.
+     * @throws ServletException in stateless mode, if the routing table could
+     * not be loaded or has a client with cookies enabled.
+     */
+    static Provider<ProxyingClient> proxyingClientProvider(Injector injector, boolean stateless) throws ServletException {
+        if (stateless) {
+            try {
+                Router router = new Router(
+                        injector.getInstance(RouterTable.class),
+                        injector.getInstance(RouterReloader.class),
+                        true);
+                ProxyingClient proxyingClient = new ProxyingClient(router);
+                return () -> proxyingClient;
+            } catch (RouterTableLoadException | ProvisionException ex) {
+                throw new ServletException("Could not create the routing table for stateless mode", ex);
+            }
+        } else {
+            return injector.getProvider(ProxyingClient.class);
+        }
     }
 
     @Override
-    protected void doPut(HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws IOException {
-        ProxyingClient client = this.injector.getInstance(ProxyingClient.class);
-        String path = servletRequest.getPathInfo();
-        MultivaluedMap<String, String> requestHeaders = extractRequestHeaders(servletRequest);
-        MultivaluedMap<String, String> parameterMap = toMultivaluedMap(servletRequest.getParameterMap());
-        try {
-            ProxyResponse proxyResponse = client.proxyPut(path, servletRequest.getInputStream(), parameterMap, requestHeaders);
-            ClientResponse clientResponse = proxyResponse.getClientResponse();
-            servletResponse.setStatus(clientResponse.getStatus());
-            copyResponseHeaders(clientResponse.getHeaders(), proxyResponse.getReplacementPathAndClient(), baseUrl(servletRequest.getContextPath(), servletRequest).toString(), servletResponse);
-            copyStream(clientResponse.getEntityInputStream(), servletResponse.getOutputStream());
-        } catch (ClientException e) {
-            servletResponse.setStatus(e.getResponseStatus().getStatusCode());
-            servletResponse.getOutputStream().print(e.getMessage());
+    public void destroy() {
+        if (this.asyncExecutor != null) {
+            this.asyncExecutor.shutdownNow();
+        }
+        if (this.asyncTimer != null) {
+            this.asyncTimer.shutdownNow();
         }
     }
 
+    @Override
+    protected void doPut(HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws IOException {
+        proxy(servletRequest, servletResponse, (client, path, inputStream, parameterMap, requestHeaders)
+                -> client.proxyPut(path, inputStream, parameterMap, requestHeaders));
+    }
+
     @Override
     protected void doPost(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
             throws IOException {
-        ProxyingClient client = this.injector.getInstance(ProxyingClient.class);
-        String path = servletRequest.getPathInfo();
-        MultivaluedMap<String, String> requestHeaders = extractRequestHeaders(servletRequest);
-        MultivaluedMap<String, String> parameterMap = toMultivaluedMap(servletRequest.getParameterMap());
-        try {
-            ProxyResponse proxyResponse = client.proxyPost(path, servletRequest.getInputStream(), parameterMap, requestHeaders);
-            ClientResponse clientResponse = proxyResponse.getClientResponse();
-            servletResponse.setStatus(clientResponse.getStatus());
-            copyResponseHeaders(clientResponse.getHeaders(), proxyResponse.getReplacementPathAndClient(), baseUrl(servletRequest.getContextPath(), servletRequest).toString(), servletResponse);
-            copyStream(clientResponse.getEntityInputStream(), servletResponse.getOutputStream());
-        } catch (ClientException e) {
-            servletResponse.setStatus(e.getResponseStatus().getStatusCode());
-            servletResponse.getOutputStream().print(e.getMessage());
-        }
-
+        proxy(servletRequest, servletResponse, (client, path, inputStream, parameterMap, requestHeaders)
+                -> client.proxyPost(path, inputStream, parameterMap, requestHeaders));
     }
 
     @Override
     protected void doDelete(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
             throws IOException {
-        ProxyingClient client = this.injector.getInstance(ProxyingClient.class);
-        String path = servletRequest.getPathInfo();
-        MultivaluedMap<String, String> requestHeaders = extractRequestHeaders(servletRequest);
-        MultivaluedMap<String, String> parameterMap = toMultivaluedMap(servletRequest.getParameterMap());
-        try {
-            ProxyResponse proxyResponse = client.proxyDelete(path, parameterMap, requestHeaders);
-            ClientResponse clientResponse = proxyResponse.getClientResponse();
-            servletResponse.setStatus(clientResponse.getStatus());
-            copyResponseHeaders(clientResponse.getHeaders(), proxyResponse.getReplacementPathAndClient(), baseUrl(servletRequest.getContextPath(), servletRequest).toString(), servletResponse);
-            copyStream(clientResponse.getEntityInputStream(), servletResponse.getOutputStream());
-        } catch (ClientException e) {
-            servletResponse.setStatus(e.getResponseStatus().getStatusCode());
-            servletResponse.getOutputStream().print(e.getMessage());
-        }
+        proxy(servletRequest, servletResponse, (client, path, inputStream, parameterMap, requestHeaders)
+                -> client.proxyDelete(path, parameterMap, requestHeaders));
     }
 
     @Override
     protected void doGet(HttpServletRequest servletRequest, HttpServletResponse servletResponse)
             throws IOException {
-        ProxyingClient client = this.injector.getInstance(ProxyingClient.class);
+        proxy(servletRequest, servletResponse, (client, path, inputStream, parameterMap, requestHeaders)
+                -> client.proxyGet(path, parameterMap, requestHeaders));
+    }
+
+    private void proxy(HttpServletRequest servletRequest, HttpServletResponse servletResponse, ProxyCall call) throws IOException {
+        ProxyingClient client = this.proxyingClientProvider.get();
         String path = servletRequest.getPathInfo();
         MultivaluedMap<String, String> requestHeaders = extractRequestHeaders(servletRequest);
-        MultivaluedMap<String, String> parameterMap = toMultivaluedMap(servletRequest.getParameterMap());
+        String proxyResourceUrl = baseUrl(servletRequest.getContextPath() + servletRequest.getServletPath(), servletRequest).toString();
+        if (this.async && servletRequest.isAsyncSupported()) {
+            MultivaluedMap<String, String> parameterMap = copyOf(servletRequest.getParameterMap());
+            proxyAsync(servletRequest, servletResponse, call, client, path, parameterMap, requestHeaders, proxyResourceUrl);
+        } else {
+            MultivaluedMap<String, String> parameterMap = toMultivaluedMap(servletRequest.getParameterMap());
+            try {
+                ProxyResponse proxyResponse = call.call(client, path, servletRequest.getInputStream(), parameterMap, requestHeaders);
+                writeResponse(proxyResponse, proxyResourceUrl, servletResponse);
+            } catch (ClientException e) {
+                writeError(e, servletResponse);
+            }
+        }
+    }
+
+    /**
+     * Makes the proxied call on a worker thread. The CAS assertion, which the
+     * CAS filters keep in a thread local, is handed over to the worker.
+     *
+     * The container's async timeout is disabled, because it would also fire
+     * while a large response is being streamed. Instead, a timer sends 504
+     * (Gateway Timeout) if the response headers have not arrived in time.
+     * The worker reads the request body through a {@link GuardedInputStream}
+     * and gets copies of everything else it needs from the request, so that
+     * once the timer has completed the request, the worker no longer touches
+     * it.
+     */
+    private void proxyAsync(HttpServletRequest servletRequest, HttpServletResponse servletResponse, ProxyCall call,
+            ProxyingClient client, String path, MultivaluedMap<String, String> parameterMap,
+            MultivaluedMap<String, String> requestHeaders, String proxyResourceUrl) throws IOException {
+        long routeTimeout = path != null ? client.getTimeout(path) : 0;
+        long timeout = routeTimeout > 0 ? routeTimeout : this.asyncTimeout;
+        AtomicInteger state = new AtomicInteger(WAITING);
+        GuardedInputStream inputStream = new GuardedInputStream(servletRequest.getInputStream(), state);
+        AsyncContext asyncContext = servletRequest.startAsync(servletRequest, servletResponse);
+        asyncContext.setTimeout(0);
+        ScheduledFuture<?> timer = null;
+        if (timeout > 0) {
+            timer = this.asyncTimer.schedule(() -> {
+                if (state.compareAndSet(WAITING, TIMED_OUT)) {
+                    synchronized (inputStream) {
+                        sendErrorQuietly(servletResponse, HttpServletResponse.SC_GATEWAY_TIMEOUT);
+                        asyncContext.complete();
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        ScheduledFuture<?> timeoutTask = timer;
+        Assertion assertion = AssertionHolder.getAssertion();
+        try {
+            this.asyncExecutor.execute(() -> {
+                if (state.get() != WAITING) {
+                    return;
+                }
+                AssertionHolder.setAssertion(assertion);
+                try {
+                    ProxyResponse proxyResponse = call.call(client, path, inputStream, parameterMap, requestHeaders);
+                    if (respond(state, timeoutTask)) {
+                        writeResponse(proxyResponse, proxyResourceUrl, servletResponse);
+                    } else {
+                        proxyResponse.close();
+                    }
+                } catch (ClientException e) {
+                    if (respond(state, timeoutTask)) {
+                        writeError(e, servletResponse);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (respond(state, timeoutTask)) {
+                        sendErrorQuietly(servletResponse, HttpServletResponse.SC_BAD_GATEWAY);
+                    }
+                } catch (Error e) {
+                    /*
+                     * Claim the response so that the async context is
+                     * completed below, then let the error propagate.
+                     */
+                    if (respond(state, timeoutTask)) {
+                        sendErrorQuietly(servletResponse, HttpServletResponse.SC_BAD_GATEWAY);
+                    }
+                    throw e;
+                } finally {
+                    AssertionHolder.clear();
+                    if (state.get() == RESPONDING) {
+                        asyncContext.complete();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            if (respond(state, timeoutTask)) {
+                sendErrorQuietly(servletResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                asyncContext.complete();
+            }
+        }
+    }
+
+    /**
+     * Claims the response for the worker and disarms the timer.
+     *
+     * @return <code>true</code> if the worker may write the response,
+     * <code>false</code> if the call has already timed out.
+     */
+    private static boolean respond(AtomicInteger state, ScheduledFuture<?> timeoutTask) {
+        if (state.compareAndSet(WAITING, RESPONDING)) {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeResponse(ProxyResponse proxyResponse, String proxyResourceUrl, HttpServletResponse servletResponse) throws IOException {
+        ClientResponse clientResponse = proxyResponse.getClientResponse();
         try {
-            ProxyResponse proxyResponse = client.proxyGet(path, parameterMap, requestHeaders);
-            ClientResponse clientResponse = proxyResponse.getClientResponse();
             servletResponse.setStatus(clientResponse.getStatus());
-            copyResponseHeaders(clientResponse.getHeaders(), proxyResponse.getReplacementPathAndClient(), baseUrl(servletRequest.getContextPath(), servletRequest).toString(), servletResponse);
-            copyStream(clientResponse.getEntityInputStream(), servletResponse.getOutputStream());
-        } catch (ClientException e) {
-            servletResponse.setStatus(e.getResponseStatus().getStatusCode());
-            servletResponse.getOutputStream().print(e.getMessage());
+            copyResponseHeaders(clientResponse.getHeaders(), proxyResponse.getReplacementPathAndClient(), proxyResourceUrl, servletResponse);
+            InputStream entityInputStream = clientResponse.getEntityInputStream();
+            long contentLength = contentLength(clientResponse.getHeaders(), entityInputStream);
+            if (contentLength >= 0) {
+                servletResponse.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(contentLength));
+            }
+            if (entityInputStream != null) {
+                copyStream(entityInputStream, servletResponse.getOutputStream(), contentLength);
+            }
+        } finally {
+            proxyResponse.close();
         }
     }
 
-    private static MultivaluedMap<String, String> toMultivaluedMap(Map<String, String[]> inQueryParameters) {
-        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
-        for (Map.Entry<String, String[]> parameter : inQueryParameters.entrySet()) {
-            String[] values = parameter.getValue();
-            for (String value : values) {
-                queryParams.add(parameter.getKey(), value);
+    /**
+     * Gets the length of a backend response's body as it will be copied.
+     *
+     * @param headers the backend response's headers.
+     * @param entityInputStream the body.
+     * @return the length, or -1 if it is unknown or if the client decoded
+     * a compressed body, which makes the header's value wrong.
+     */
+    private static long contentLength(MultivaluedMap<String, String> headers, InputStream entityInputStream) {
+        String contentLength = headers.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength == null || entityInputStream instanceof InflaterInputStream) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static void writeError(ClientException e, HttpServletResponse servletResponse) throws IOException {
+        servletResponse.setStatus(e.getResponseStatus().getStatusCode());
+        servletResponse.getOutputStream().print(e.getMessage());
+    }
+
+    private static void sendErrorQuietly(HttpServletResponse servletResponse, int status) {
+        try {
+            if (!servletResponse.isCommitted()) {
+                servletResponse.sendError(status);
             }
+        } catch (IOException ignore) {
         }
-        return queryParams;
     }
 
-    private static MultivaluedMap<String, String> extractRequestHeaders(HttpServletRequest servletRequest) {
+    /**
+     * Copies the request parameters, for use after the request may have been
+     * recycled.
+     *
+     * @param inQueryParameters the servlet request's parameter map.
+     * @return a copy, or <code>null</code> if there are no parameters.
+     */
+    private static MultivaluedMap<String, String> copyOf(Map<String, String[]> inQueryParameters) {
+        if (inQueryParameters.isEmpty()) {
+            return null;
+        }
+        MultivaluedMap<String, String> result = new MultivaluedMapImpl();
+        for (Map.Entry<String, String[]> entry : inQueryParameters.entrySet()) {
+            result.put(entry.getKey(), Arrays.asList(entry.getValue().clone()));
+        }
+        return result;
+    }
+
+    /**
+     * Gets a view of the request parameters.
+     *
+     * @param inQueryParameters the servlet request's parameter map.
+     * @return a read-only view, or <code>null</code> if there are no
+     * parameters.
+     */
+    private static MultivaluedMap<String, String> toMultivaluedMap(Map<String, String[]> inQueryParameters) {
+        return inQueryParameters.isEmpty() ? null : new ParameterMapView(inQueryParameters);
+    }
+
+    static MultivaluedMap<String, String> extractRequestHeaders(HttpServletRequest servletRequest) {
         MultivaluedMap<String, String> headers = new MultivaluedMapImpl();
         for (Enumeration<String> enm = servletRequest.getHeaderNames(); enm.hasMoreElements();) {
             String headerName = enm.nextElement();
-            for (Enumeration<String> enm2 = servletRequest.getHeaders(headerName); enm2.hasMoreElements();) {
-                String nextValue = enm2.nextElement();
-                if (!requestHeadersToExclude.contains(headerName.toUpperCase())) {
-                    headers.add(headerName, nextValue);
+            if (!requestHeadersToExclude.matches(headerName)) {
+                for (Enumeration<String> enm2 = servletRequest.getHeaders(headerName); enm2.hasMoreElements();) {
+                    headers.add(headerName, enm2.nextElement());
                 }
             }
         }
@@ -215,11 +477,14 @@ public class ProxyServlet extends HttpServlet {
         if (headers != null) {
             for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
                 String key = entry.getKey();
+                if (responseHeadersToExclude.matches(key)) {
+                    continue;
+                }
+                boolean location = HttpHeaders.LOCATION.equalsIgnoreCase(key) || HttpHeaders.CONTENT_LOCATION.equalsIgnoreCase(key);
                 for (String val : entry.getValue()) {
-                    if (!responseHeadersToExclude.contains(key.toUpperCase())) {
-                        if ("Location".equals(key.toUpperCase())) {
-                            response.addHeader(key, replacementPathAndClient.revertPath(proxyResourceUrl));
-                        }
+                    if (location) {
+                        response.addHeader(key, replacementPathAndClient.revertPath(val, proxyResourceUrl));
+                    } else {
                         response.addHeader(key, val);
                     }
                 }
@@ -227,22 +492,90 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
-    private static int copyStream(InputStream input, OutputStream output) throws IOException {
-        byte[] buffer = new byte[1024 * 4];
+    /**
+     * Copies a response body using a per-thread buffer. Reads are sized to
+     * the body's length when it is known and smaller than the buffer.
+     *
+     * @param input the body.
+     * @param output where to write it.
+     * @param contentLength the length of the body, or -1 if unknown.
+     * @return the number of bytes copied.
+     * @throws IOException if reading or writing failed.
+     */
+    private static long copyStream(InputStream input, OutputStream output, long contentLength) throws IOException {
+        byte[] buffer = COPY_BUFFER.get();
+        int chunk = contentLength > 0 && contentLength < buffer.length ? (int) contentLength : buffer.length;
         long count = 0;
-        int n = 0;
-        while (-1 != (n = input.read(buffer))) {
+        int n;
+        while (-1 != (n = input.read(buffer, 0, chunk))) {
             output.write(buffer, 0, n);
             count += n;
         }
-        if (count > Integer.MAX_VALUE) {
-            return -1;
-        }
-        return (int) count;
+        return count;
     }
     
-    private static URI baseUrl(String contextPath, HttpServletRequest request) {
+    static URI baseUrl(String contextPath, HttpServletRequest request) {
         return URI.create(request.getRequestURL().toString()).resolve(contextPath);
     }
 
+    /**
+     * One of the proxying client's proxy methods.
+     */
+    @FunctionalInterface
+    private interface ProxyCall {
+
+        ProxyResponse call(ProxyingClient client, String path, InputStream inputStream,
+                MultivaluedMap<String, String> parameterMap, MultivaluedMap<String, String> requestHeaders)
+                throws ClientException;
+    }
+
+
+    /**
+     * The request body as read by an async worker. Each read holds the
+     * stream's lock and fails once the call has timed out, and the timer
+     * holds the same lock while it completes the request, so the worker
+     * never reads from a request that has been handed back to the
+     * container.
+     */
+    private static final class GuardedInputStream extends InputStream {
+
+        private final InputStream in;
+        private final AtomicInteger state;
+
+        GuardedInputStream(InputStream inIn, AtomicInteger inState) {
+            this.in = inIn;
+            this.state = inState;
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            checkNotTimedOut();
+            return this.in.read();
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            checkNotTimedOut();
+            return this.in.read(b, off, len);
+        }
+
+        @Override
+        public synchronized int available() throws IOException {
+            checkNotTimedOut();
+            return this.in.available();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (this.state.get() != TIMED_OUT) {
+                this.in.close();
+            }
+        }
+
+        private void checkNotTimedOut() throws IOException {
+            if (this.state.get() == TIMED_OUT) {
+                throw new IOException("Proxied call timed out");
+            }
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package org.eurekaclinical.common.util;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.Verification;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Verifies HMAC256-signed tokens with a shared secret. The HMAC algorithm and
+ * the underlying verifier are created once, at construction time.
+ *
+ * Tokens must carry an expiration time. Expiration, not-before and
+ * issued-at are checked by the underlying verifier, allowing for the
+ * configured clock skew.
+ *
+ * @author hrathod
+ */
+public final class HmacJwtVerifier implements JwtVerifier {
+
+    private final JWTVerifier verifier;
+
+    /**
+     * Creates a verifier that does not check the issuer and allows no clock
+     * skew.
+     *
+     * @param secret the shared secret. Cannot be <code>null</code>.
+     * @throws UnsupportedEncodingException if the secret cannot be encoded as
+     * UTF-8.
+     */
+    public HmacJwtVerifier(String secret) throws UnsupportedEncodingException {
+        this(secret, null, 0L);
+    }
+
+    /**
+     * Creates a verifier.
+     *
+     * @param secret the shared secret. Cannot be <code>null</code>.
+     * @param issuer the required value of the <code>iss</code> claim, or
+     * <code>null</code> to accept any issuer.
+     * @param leewaySeconds the allowed clock skew, in seconds, when checking
+     * the <code>exp</code>, <code>nbf</code> and <code>iat</code> claims.
+     * @throws UnsupportedEncodingException if the secret cannot be encoded as
+     * UTF-8.
+     */
+    public HmacJwtVerifier(String secret, String issuer, long leewaySeconds)
+            throws UnsupportedEncodingException {
+        if (secret == null) {
+            throw new IllegalArgumentException("secret cannot be null");
+        }
+        this.verifier = buildVerifier(Algorithm.HMAC256(secret), issuer, leewaySeconds);
+    }
+
+    HmacJwtVerifier(Algorithm algorithm, String issuer, long leewaySeconds) {
+        this.verifier = buildVerifier(algorithm, issuer, leewaySeconds);
+    }
+
+    @Override
+    public DecodedJWT verify(String token) throws JWTVerificationException {
+        return verifyRequiringExpiration(this.verifier, token);
+    }
+
+    static JWTVerifier buildVerifier(Algorithm algorithm, String issuer, long leewaySeconds) {
+        Verification verification = JWT.require(algorithm)
+                .acceptLeeway(leewaySeconds);
+        if (issuer != null) {
+            verification.withIssuer(issuer);
+        }
+        return verification.build();
+    }
+
+    /*
+     * The verifier already rejects expired tokens; it only skips the check
+     * when the exp claim is absent, so that is all that is left to check.
+     */
+    static DecodedJWT verifyRequiringExpiration(JWTVerifier verifier, String token) {
+        DecodedJWT decoded = verifier.verify(token);
+        if (decoded.getExpiresAt() == null) {
+            throw new JWTVerificationException("Token has no expiration time");
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,356 @@
+package org.eurekaclinical.common.util;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verifies RSA- and EC-signed tokens with public keys from a local JSON Web
+ * Key Set (JWKS) file. Each key in the set is identified by its
+ * <code>kid</code>, and a verifier is built for each key when the file is
+ * loaded, so verifying a token is a lookup of the <code>kid</code> in its
+ * header followed by a signature check.
+ *
+ * Supported keys are RSA keys (RS256, RS384 or RS512, by their
+ * <code>alg</code> member, default RS256) and EC keys on the P-256, P-384
+ * and P-521 curves (ES256, ES384 and ES512). Other keys are skipped. A token
+ * without a <code>kid</code> is accepted only if the set has exactly one
+ * key.
+ *
+ * Keys may be rotated without a restart by replacing the file after
+ * calling {@link #watch() }, or by calling {@link #reload() }. If the new
+ * file cannot be read, the current keys are kept. Rotation should add the
+ * new key to the set before tokens signed with it are issued, and remove
+ * the old key only after the tokens signed with it have expired.
+ *
+ * @author Andrew Post
+ */
+public final class JwksJwtVerifier implements JwtVerifier, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwksJwtVerifier.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper(JSON_FACTORY);
+
+    private final Path file;
+    private final String issuer;
+    private final long leewaySeconds;
+    private final AtomicReference<Map<String, JWTVerifier>> verifiers;
+    private final List<Runnable> reloadListeners;
+    private WatchService watchService;
+
+    /**
+     * Creates a verifier and loads the key set.
+     *
+     * @param inFile the JWKS file. Cannot be <code>null</code>.
+     * @param inIssuer the required value of the <code>iss</code> claim, or
+     * <code>null</code> to accept any issuer.
+     * @param inLeewaySeconds the allowed clock skew, in seconds, when
+     * checking the <code>exp</code>, <code>nbf</code> and <code>iat</code>
+     * claims.
+     * @throws IOException if the file could not be read or parsed, or it
+     * contains no supported keys.
+     */
+    public JwksJwtVerifier(Path inFile, String inIssuer, long inLeewaySeconds) throws IOException {
+        if (inFile == null) {
+            throw new IllegalArgumentException("inFile cannot be null");
+        }
+        this.file = inFile.toAbsolutePath();
+        this.issuer = inIssuer;
+        this.leewaySeconds = inLeewaySeconds;
+        this.reloadListeners = new CopyOnWriteArrayList<>();
+        this.verifiers = new AtomicReference<>(load());
+    }
+
+    @Override
+    public DecodedJWT verify(String token) throws JWTVerificationException {
+        Map<String, JWTVerifier> current = this.verifiers.get();
+        String kid = readKeyId(token);
+        JWTVerifier verifier;
+        if (kid != null) {
+            verifier = current.get(kid);
+        } else if (current.size() == 1) {
+            verifier = current.values().iterator().next();
+        } else {
+            throw new JWTVerificationException("Token has no key id");
+        }
+        if (verifier == null) {
+            throw new JWTVerificationException("Unknown key id " + kid);
+        }
+        return HmacJwtVerifier.verifyRequiringExpiration(verifier, token);
+    }
+
+    /**
+     * Gets the ids of the keys that are currently loaded.
+     *
+     * @return an unmodifiable set of key ids.
+     */
+    public Set<String> getKeyIds() {
+        return this.verifiers.get().keySet();
+    }
+
+    /**
+     * Registers a callback that is run after each reload that replaced the
+     * keys, for example, to discard tokens that were verified with keys
+     * that may have been removed.
+     *
+     * @param listener the callback. Cannot be <code>null</code>.
+     */
+    public void addReloadListener(Runnable listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        this.reloadListeners.add(listener);
+    }
+
+    /**
+     * Reloads the key set from the file. If the file cannot be read or
+     * contains no supported keys, the current keys are kept.
+     *
+     * @return <code>true</code> if the keys were replaced.
+     */
+    public boolean reload() {
+        try {
+            Map<String, JWTVerifier> loaded = load();
+            this.verifiers.set(loaded);
+            LOGGER.info("Loaded keys {} from {}", loaded.keySet(), this.file);
+            for (Runnable listener : this.reloadListeners) {
+                listener.run();
+            }
+            return true;
+        } catch (IOException ex) {
+            LOGGER.error("Error reloading keys from " + this.file + "; keeping current keys", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Reloads the key set whenever the file is created or modified. The file
+     * is watched by a daemon thread until {@link #close() } is called.
+     *
+     * @throws IOException if the file's directory could not be watched.
+     */
+    public synchronized void watch() throws IOException {
+        if (this.watchService != null) {
+            return;
+        }
+        WatchService ws = FileSystems.getDefault().newWatchService();
+        Path fileName = this.file.getFileName();
+        this.file.getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watchService = ws;
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = ws.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (fileName.equals(event.context())) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        reload();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException ex) {
+                LOGGER.debug("Stopped watching {}", this.file);
+            }
+        }, "JwksJwtVerifier-" + fileName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file, if it is being watched.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Error closing watch service", ex);
+            }
+            this.watchService = null;
+        }
+    }
+
+    private Map<String, JWTVerifier> load() throws IOException {
+        JsonNode root;
+        try (InputStream in = Files.newInputStream(this.file)) {
+            root = MAPPER.readTree(in);
+        }
+        JsonNode keys = root != null ? root.get("keys") : null;
+        if (keys == null || !keys.isArray()) {
+            throw new IOException("No keys array in " + this.file);
+        }
+        Map<String, JWTVerifier> result = new HashMap<>();
+        for (JsonNode key : keys) {
+            String kid = key.path("kid").getTextValue();
+            if (kid == null) {
+                LOGGER.warn("Skipping key without a kid in {}", this.file);
+                continue;
+            }
+            try {
+                Algorithm algorithm = toAlgorithm(key);
+                if (algorithm == null) {
+                    LOGGER.warn("Skipping unsupported key {} in {}", kid, this.file);
+                } else {
+                    result.put(kid, HmacJwtVerifier.buildVerifier(algorithm, this.issuer, this.leewaySeconds));
+                }
+            } catch (GeneralSecurityException | IllegalArgumentException ex) {
+                LOGGER.warn("Skipping invalid key " + kid + " in " + this.file, ex);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IOException("No supported keys in " + this.file);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Algorithm toAlgorithm(JsonNode key) throws GeneralSecurityException {
+        String kty = key.path("kty").getTextValue();
+        if ("RSA".equals(kty)) {
+            RSAPublicKey publicKey = (RSAPublicKey) KeyFactory.getInstance("RSA").generatePublic(
+                    new RSAPublicKeySpec(decodeUnsigned(key, "n"), decodeUnsigned(key, "e")));
+            String alg = key.path("alg").getTextValue();
+            if (alg == null || "RS256".equals(alg)) {
+                return Algorithm.RSA256(publicKey, null);
+            } else if ("RS384".equals(alg)) {
+                return Algorithm.RSA384(publicKey, null);
+            } else if ("RS512".equals(alg)) {
+                return Algorithm.RSA512(publicKey, null);
+            } else {
+                return null;
+            }
+        } else if ("EC".equals(kty)) {
+            String crv = key.path("crv").getTextValue();
+            String curveName;
+            if ("P-256".equals(crv)) {
+                curveName = "secp256r1";
+            } else if ("P-384".equals(crv)) {
+                curveName = "secp384r1";
+            } else if ("P-521".equals(crv)) {
+                curveName = "secp521r1";
+            } else {
+                return null;
+            }
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec(curveName));
+            ECParameterSpec spec = parameters.getParameterSpec(ECParameterSpec.class);
+            ECPoint point = new ECPoint(decodeUnsigned(key, "x"), decodeUnsigned(key, "y"));
+            ECPublicKey publicKey = (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(
+                    new ECPublicKeySpec(point, spec));
+            switch (curveName) {
+                case "secp256r1":
+                    return Algorithm.ECDSA256(publicKey, null);
+                case "secp384r1":
+                    return Algorithm.ECDSA384(publicKey, null);
+                default:
+                    return Algorithm.ECDSA512(publicKey, null);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    private static BigInteger decodeUnsigned(JsonNode key, String member) {
+        String value = key.path(member).getTextValue();
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + member);
+        }
+        return new BigInteger(1, Base64.getUrlDecoder().decode(value));
+    }
+
+    /*
+     * Reads only the kid from the token's header, leaving full decoding to
+     * the verifier.
+     */
+    private static String readKeyId(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            throw new JWTDecodeException("The token was expected to have 3 parts");
+        }
+        try {
+            byte[] header = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            try (JsonParser parser = JSON_FACTORY.createJsonParser(header)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JWTDecodeException("The token's header is not a JSON object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("kid".equals(name) && value == JsonToken.VALUE_STRING) {
+                        return parser.getText();
+                    }
+                    parser.skipChildren();
+                }
+                return null;
+            }
+        } catch (IllegalArgumentException | IOException ex) {
+            throw new JWTDecodeException("The token's header could not be decoded", ex);
+        }
+    }
+}
@@ -21,15 +21,13 @@ package org.eurekaclinical.common.util;
  */
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 
 import java.io.UnsupportedEncodingException;
-import java.time.Instant;
-import java.time.ZonedDateTime;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides methods to encode and decode JWT tokens.
@@ -38,34 +36,84 @@ import java.util.Date;
  */
 public final class JwtUtil {
 
+    static final String ISSUER = "eurekaclinical";
+
+    private static volatile CachedKeys lastKeys;
+
     private JwtUtil () {
         // no instantiation
     }
 
+    /**
+     * Signs a new HMAC256 token. The algorithm for the most recently used
+     * secret is kept, so repeated calls with the same secret do not repeat
+     * key setup. Code that needs a token for every outbound request should
+     * use a {@link TokenIssuer}, which also reuses tokens until they are
+     * close to expiring.
+     *
+     * @param secret the shared secret.
+     * @param expirationMinutes how long the token is valid, in minutes.
+     * @param username the value of the <code>username</code> claim.
+     * @param roles the value of the <code>roles</code> claim.
+     * @return the signed token.
+     * @throws UnsupportedEncodingException if the secret cannot be encoded as
+     * UTF-8.
+     */
     public static String createToken (String secret, int expirationMinutes, String username, String[] roles)
             throws UnsupportedEncodingException {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(expirationMinutes);
+        return sign(keysFor(secret).algorithm, expiresAt, username, roles);
+    }
 
-        Algorithm algorithm = Algorithm.HMAC256(secret);
-        Instant expirationInstant = ZonedDateTime.now().plusMinutes(expirationMinutes).toInstant();
+    /**
+     * Verifies and decodes a HMAC256-signed token. The verifier for the most
+     * recently used secret is kept, so repeated calls with the same secret
+     * do not repeat key setup. Services that verify tokens on every request
+     * should hold a {@link HmacJwtVerifier} instead.
+     *
+     * @param token the encoded token.
+     * @param secret the shared secret.
+     * @return the decoded token.
+     * @throws UnsupportedEncodingException if the secret cannot be encoded as
+     * UTF-8.
+     * @throws JWTVerificationException if verification fails.
+     */
+    public static DecodedJWT verifyAndDecode (String token, String secret) throws UnsupportedEncodingException {
+        return keysFor(secret).verifier.verify(token);
+    }
+
+    static String sign(Algorithm algorithm, long expiresAt, String username, String[] roles) {
         return JWT.create()
-                .withIssuer("eurekaclinical")
-                .withExpiresAt(Date.from(expirationInstant))
+                .withIssuer(ISSUER)
+                .withExpiresAt(new Date(expiresAt))
                 .withClaim("username", username)
                 .withArrayClaim("roles", roles)
                 .sign(algorithm);
     }
 
-    public static DecodedJWT verifyAndDecode (String token, String secret) throws UnsupportedEncodingException {
-        Algorithm algorithm = Algorithm.HMAC256(secret);
-        JWTVerifier verifier = JWT.require(algorithm)
-                .build();
-        DecodedJWT decoded = verifier.verify(token);
-
-        if (decoded.getExpiresAt().before(Date.from(ZonedDateTime.now().toInstant()))) {
-            throw new JWTVerificationException("Token expired");
+    private static CachedKeys keysFor(String secret) throws UnsupportedEncodingException {
+        CachedKeys cached = lastKeys;
+        if (cached == null || !cached.secret.equals(secret)) {
+            if (secret == null) {
+                throw new IllegalArgumentException("secret cannot be null");
+            }
+            Algorithm algorithm = Algorithm.HMAC256(secret);
+            cached = new CachedKeys(secret, algorithm, new HmacJwtVerifier(algorithm, null, 0L));
+            lastKeys = cached;
         }
+        return cached;
+    }
+
+    private static final class CachedKeys {
 
-        return decoded;
+        private final String secret;
+        private final Algorithm algorithm;
+        private final HmacJwtVerifier verifier;
+
+        CachedKeys(String secret, Algorithm algorithm, HmacJwtVerifier verifier) {
+            this.secret = secret;
+            this.algorithm = algorithm;
+            this.verifier = verifier;
+        }
     }
 }
-
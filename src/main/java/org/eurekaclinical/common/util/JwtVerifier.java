@@ -0,0 +1,45 @@
+package org.eurekaclinical.common.util;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+/**
+ * Verifies and decodes JWT tokens. Implementations are built once (for
+ * example, in a filter's <code>init</code> method) and are safe for use by
+ * multiple threads, so that key setup is not repeated for every request.
+ *
+ * @author hrathod
+ */
+public interface JwtVerifier {
+
+    /**
+     * Verifies the token's signature and registered claims, and decodes it.
+     *
+     * @param token the encoded token.
+     * @return the decoded token.
+     * @throws JWTVerificationException if the token is malformed, its
+     * signature is invalid, it has no expiration time, or any of its claims
+     * fail verification.
+     */
+    DecodedJWT verify(String token) throws JWTVerificationException;
+}
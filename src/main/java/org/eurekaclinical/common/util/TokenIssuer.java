@@ -0,0 +1,200 @@
+package org.eurekaclinical.common.util;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.auth0.jwt.algorithms.Algorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mints HMAC256 tokens like {@link JwtUtil#createToken}, and reuses each
+ * token for every request with the same username and roles until it is
+ * close to expiring. The signing algorithm is built once.
+ *
+ * A daemon thread re-signs tokens that are in use when four fifths of
+ * their lifetime have passed, so that callers get a fresh token without
+ * waiting on signing. Tokens that have not been requested for a whole
+ * lifetime are dropped. A token is handed out only while at least a tenth
+ * of its lifetime remains; otherwise, for example when the issuer is first
+ * asked for it, it is signed on the calling thread. This class is
+ * thread-safe.
+ *
+ * @author hrathod
+ */
+public final class TokenIssuer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenIssuer.class);
+
+    private final Algorithm algorithm;
+    private final long lifetimeMillis;
+    private final long refreshAheadMillis;
+    private final long minRemainingMillis;
+    private final ConcurrentHashMap<Key, Minted> tokens;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a token issuer and starts its refresh thread.
+     *
+     * @param secret the shared secret. Cannot be <code>null</code>.
+     * @param expirationMinutes how long each token is valid, in minutes.
+     * Must be positive.
+     * @throws UnsupportedEncodingException if the secret cannot be encoded as
+     * UTF-8.
+     */
+    public TokenIssuer(String secret, int expirationMinutes) throws UnsupportedEncodingException {
+        if (secret == null) {
+            throw new IllegalArgumentException("secret cannot be null");
+        }
+        if (expirationMinutes <= 0) {
+            throw new IllegalArgumentException("expirationMinutes must be positive");
+        }
+        this.algorithm = Algorithm.HMAC256(secret);
+        this.lifetimeMillis = TimeUnit.MINUTES.toMillis(expirationMinutes);
+        this.refreshAheadMillis = this.lifetimeMillis / 5;
+        this.minRemainingMillis = this.lifetimeMillis / 10;
+        this.tokens = new ConcurrentHashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread thread = new Thread(r, "TokenIssuer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, this.minRemainingMillis / 2);
+        this.scheduler.scheduleWithFixedDelay(this::refresh, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets a token for the given username and roles, reusing a previously
+     * minted one if it is not close to expiring.
+     *
+     * @param username the value of the <code>username</code> claim.
+     * @param roles the value of the <code>roles</code> claim.
+     * @return the signed token.
+     */
+    public String getToken(String username, String... roles) {
+        Key key = new Key(username, roles);
+        long now = System.currentTimeMillis();
+        Minted minted = this.tokens.get(key);
+        if (minted == null || minted.expiresAt - now < this.minRemainingMillis) {
+            minted = this.tokens.compute(key, (k, current) ->
+                    current != null && current.expiresAt - now >= this.minRemainingMillis
+                            ? current : mint(k, now));
+        }
+        minted.lastUsed = now;
+        return minted.token;
+    }
+
+    /**
+     * Gets the number of tokens that are being reused.
+     *
+     * @return the number of tokens.
+     */
+    public int size() {
+        return this.tokens.size();
+    }
+
+    /**
+     * Stops the refresh thread and drops all tokens.
+     */
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+        this.tokens.clear();
+    }
+
+    private Minted mint(Key key, long now) {
+        long expiresAt = now + this.lifetimeMillis;
+        return new Minted(JwtUtil.sign(this.algorithm, expiresAt, key.username, key.roles), expiresAt, now);
+    }
+
+    private void refresh() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Iterator<Map.Entry<Key, Minted>> itr = this.tokens.entrySet().iterator(); itr.hasNext();) {
+                Map.Entry<Key, Minted> entry = itr.next();
+                Minted minted = entry.getValue();
+                if (now - minted.lastUsed >= this.lifetimeMillis) {
+                    itr.remove();
+                } else if (minted.expiresAt - now <= this.refreshAheadMillis) {
+                    Minted refreshed = mint(entry.getKey(), now);
+                    refreshed.lastUsed = minted.lastUsed;
+                    this.tokens.replace(entry.getKey(), minted, refreshed);
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error("Error refreshing tokens", ex);
+        }
+    }
+
+    private static final class Key {
+
+        private final String username;
+        private final String[] roles;
+        private final int hashCode;
+
+        Key(String username, String[] roles) {
+            this.username = username;
+            this.roles = roles != null ? roles.clone() : null;
+            this.hashCode = 31 * (username != null ? username.hashCode() : 0) + Arrays.hashCode(this.roles);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode
+                    && (this.username != null ? this.username.equals(other.username) : other.username == null)
+                    && Arrays.equals(this.roles, other.roles);
+        }
+    }
+
+    private static final class Minted {
+
+        private final String token;
+        private final long expiresAt;
+        private volatile long lastUsed;
+
+        Minted(String token, long expiresAt, long lastUsed) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.eurekaclinical.common.comm.clients;
+
+/*-
+ * #%L
+ * Eureka! Clinical Common
+ * %%
+ * Copyright (C) 2016 - 2017 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.URI;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Tests reverting backend URLs to proxy URLs with {@link RouteIndex}'s
+ * reverse mappings.
+ *
+ * @author Andrew Post
+ */
+public class RouteIndexTest {
+
+    private static final URI BACKEND = URI.create("https://internal:8443/eurekaclinical-user-service/");
+    private static final String PROXY = "https://gateway/app/proxy-resource";
+
+    @Test
+    public void testRevertWithTrailingSlashes() {
+        assertRevert("/users/", "/api/protected/users/");
+    }
+
+    @Test
+    public void testRevertWithoutTrailingSlashes() {
+        assertRevert("/users", "/api/protected/users");
+    }
+
+    @Test
+    public void testRevertWithMixedTrailingSlashes() {
+        assertRevert("/users", "/api/protected/users/");
+        assertRevert("/users/", "/api/protected/users");
+    }
+
+    @Test
+    public void testNoRevertOfSiblingPath() {
+        RouteIndex.ReversePrefix[] prefixes = RouteIndex.reversePrefixes(BACKEND, "/api/protected/users/", "/users/");
+        for (RouteIndex.ReversePrefix prefix : prefixes) {
+            assertNull(prefix.revert("https://internal:8443/eurekaclinical-user-service/api/protected/userstats", PROXY));
+        }
+    }
+
+    private static void assertRevert(String matchingPathPrefix, String replacementPathPrefix) {
+        RouteIndex.ReversePrefix[] prefixes = RouteIndex.reversePrefixes(BACKEND, replacementPathPrefix, matchingPathPrefix);
+        RouteIndex.ReversePrefix absolute = prefixes[0];
+        RouteIndex.ReversePrefix pathOnly = prefixes[1];
+        assertEquals(PROXY + "/users/5",
+                absolute.revert("https://internal:8443/eurekaclinical-user-service/api/protected/users/5", PROXY));
+        assertEquals(PROXY + "/users",
+                absolute.revert("https://internal:8443/eurekaclinical-user-service/api/protected/users", PROXY));
+        assertEquals(PROXY + "/users/?page=2",
+                absolute.revert("https://internal:8443/eurekaclinical-user-service/api/protected/users/?page=2", PROXY));
+        assertEquals(PROXY + "/users/5",
+                pathOnly.revert("/eurekaclinical-user-service/api/protected/users/5", PROXY));
+    }
+}